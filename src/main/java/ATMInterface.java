@@ -10,18 +10,31 @@ import java.io.*;
 import java.util.HashMap;
 import javax.sound.sampled.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.Timer;
 
-public class ATMInterface extends JFrame {
-    private HashMap<String, Account> accounts;
-    private Account currentAccount;
+public final class ATMInterface extends JFrame {
+    private static final long serialVersionUID = 1L;
+    private transient AccountRegistry accounts;
+    private transient AccountStore accountStore;
+    private transient TransactionEngine engine;
+    private final transient LoginThrottle loginThrottle = new LoginThrottle();
+    private transient Account currentAccount;
     private JPanel mainPanel;
     private CardLayout cardLayout;
 
-    public HashMap<String, Account> getAccounts() {
+    public AccountRegistry getAccounts() {
         return accounts;
     }
 
+    public TransactionEngine getEngine() {
+        return engine;
+    }
+
+    public LoginThrottle getLoginThrottle() {
+        return loginThrottle;
+    }
+
     private JPanel splashScreen;
     private Timer splashTimer;
     private float glowIntensity = 0.0f;
@@ -42,9 +55,11 @@ public class ATMInterface extends JFrame {
     private static final long BLOCK_DURATION = 300000; // 5 minutes in milliseconds
     
     public ATMInterface() {
-        accounts = new HashMap<>();
+        accounts = new AccountRegistry();
         loginAttempts = new HashMap<>();
         blockedAccounts = new HashMap<>();
+        accountStore = AccountStore.create("accounts.txt", "accounts.log");
+        engine = new TransactionEngine(accountStore);
         loadAccounts();
         
         // Create splash screen first
@@ -686,7 +701,7 @@ public class ATMInterface extends JFrame {
 
         // Add admin button action listener
         adminButton.addActionListener(_ -> {
-            AdminInterface adminInterface = new AdminInterface(accounts);
+            AdminInterface adminInterface = new AdminInterface(accounts, engine);
             adminInterface.setVisible(true);
         });
 
@@ -1217,7 +1232,7 @@ public class ATMInterface extends JFrame {
             errorMessage.append("Account number should be at least 4 digits\n");
         }
 
-        if (accounts.containsKey(accNum)) {
+        if (accounts.contains(accNum)) {
             errorMessage.append("Account number already exists!\n");
         }
 
@@ -1231,8 +1246,8 @@ public class ATMInterface extends JFrame {
         }
 
         try {
-            double deposit = Double.parseDouble(initialDeposit);
-            if (deposit < 500) {
+            Money deposit = Money.parse(initialDeposit.trim());
+            if (deposit.compareTo(Money.ofCents(500_00)) < 0) {
                 errorMessage.append("Initial deposit must be at least ₱500!\n");
             }
 
@@ -1243,8 +1258,11 @@ public class ATMInterface extends JFrame {
             }
 
             // Create account and save
-            Account newAccount = new Account(accNum, pin, deposit, name);
-            accounts.put(accNum, newAccount);
+            Account newAccount = accounts.createIfAbsent(accNum, () -> new Account(accNum, pin, deposit, name));
+            if (newAccount == null) {
+                JOptionPane.showMessageDialog(this, "Account number already exists!", "Validation Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             saveAccountToFile(newAccount);
             
             // Show success message with account details
@@ -1253,52 +1271,21 @@ public class ATMInterface extends JFrame {
                 "Account Details:\n" +
                 "Name: %s\n" +
                 "Account Number: %s\n" +
-                "Initial Balance: ₱%.2f\n\n" +
+                "Initial Balance: %s\n\n" +
                 "Please remember your account number and PIN for login.",
-                name, accNum, deposit
+                name, accNum, deposit.toDisplayString()
             );
             
             JOptionPane.showMessageDialog(this, successMessage, "Account Created", JOptionPane.INFORMATION_MESSAGE);
             cardLayout.show(mainPanel, "login");
             
-        } catch (NumberFormatException e) {
+        } catch (NumberFormatException | ArithmeticException e) {
             JOptionPane.showMessageDialog(this, "Please enter a valid amount for initial deposit!", "Invalid Amount", JOptionPane.ERROR_MESSAGE);
         }
     }
 
     private void saveAccountToFile(Account account) {
-        try {
-            // First, read all accounts
-            java.util.List<String> accounts = new ArrayList<>();  // Change this line
-            File accountFile = new File("accounts.txt");
-            if (accountFile.exists()) {
-                try (BufferedReader br = new BufferedReader(new FileReader(accountFile))) {
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        String accNum = line.split(",")[0];
-                        if (!accNum.equals(account.getAccountNumber())) {
-                            accounts.add(line);
-                        }
-                    }
-                }
-            }
-            
-            // Add the updated account
-            accounts.add(String.format("%s,%s,%s,%.2f", 
-                account.getAccountNumber(),
-                account.getPin(),
-                account.getAccountHolder(),
-                account.getBalance()));
-            
-            // Write all accounts back to file
-            try (PrintWriter out = new PrintWriter(new FileWriter(accountFile))) {
-                for (String acc : accounts) {
-                    out.println(acc);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        accountStore.save(account);
     }
 
     private void playSound(String soundType) {
@@ -1319,11 +1306,6 @@ public class ATMInterface extends JFrame {
         }
     }
 
-    private Map<String, Integer> failedAttempts = new HashMap<>();
-    private Map<String, Long> lockoutTime = new HashMap<>();
-    private static final int MAX_ATTEMPTS = 3;
-    private static final long LOCKOUT_DURATION = 300000; // 5 minutes in milliseconds
-
     private boolean validateLogin(String accNum, String pin) {
         if (accNum.isEmpty()) {
             JOptionPane.showMessageDialog(this,
@@ -1344,10 +1326,7 @@ public class ATMInterface extends JFrame {
         Account acc = accounts.get(accNum);
         if (acc == null) {
             // Check if account was deleted
-            DeletedAccountManager deletedManager = new DeletedAccountManager();
-            Optional<DeletedAccount> deletedAccount = deletedManager.getDeletedAccounts().stream()
-                .filter(a -> a.getAccountNumber().equals(accNum))
-                .findFirst();
+            Optional<DeletedAccount> deletedAccount = DeletedAccountManager.getInstance().findDeletedAccount(accNum);
             
             if (deletedAccount.isPresent()) {
                 JOptionPane.showMessageDialog(this,
@@ -1382,43 +1361,33 @@ public class ATMInterface extends JFrame {
             return false;
         }
 
-        // Check if account is temporarily locked due to failed attempts
-        Long lockTime = lockoutTime.get(accNum);
-        if (lockTime != null) {
-            long remainingTime = (lockTime + LOCKOUT_DURATION - System.currentTimeMillis()) / 1000;
-            if (remainingTime > 0) {
-                JOptionPane.showMessageDialog(this,
-                    String.format("Account is temporarily locked. Please try again in %d seconds.", remainingTime),
-                    "Login Error",
-                    JOptionPane.ERROR_MESSAGE);
-                return false;
-            } else {
-                // Reset lockout if time has expired
-                lockoutTime.remove(accNum);
-                failedAttempts.remove(accNum);
-            }
+        // Check if account is temporarily locked due to failed attempts,
+        // here or over the web API
+        long remainingTime = loginThrottle.lockedSeconds(accNum);
+        if (remainingTime > 0) {
+            JOptionPane.showMessageDialog(this,
+                String.format("Account is temporarily locked. Please try again in %d seconds.", remainingTime),
+                "Login Error",
+                JOptionPane.ERROR_MESSAGE);
+            return false;
         }
 
         if (acc.getPin().equals(pin)) {
             // Reset failed attempts on successful login
-            failedAttempts.remove(accNum);
+            loginThrottle.recordSuccess(accNum);
             currentAccount = acc;
             return true;
         } else {
-            // Increment failed attempts
-            int attempts = failedAttempts.getOrDefault(accNum, 0) + 1;
-            failedAttempts.put(accNum, attempts);
+            int attempts = loginThrottle.recordFailure(accNum);
 
-            if (attempts >= MAX_ATTEMPTS) {
-                // Lock the account
-                lockoutTime.put(accNum, System.currentTimeMillis());
+            if (attempts >= LoginThrottle.MAX_ATTEMPTS) {
                 JOptionPane.showMessageDialog(this,
-                    String.format("Account locked due to %d failed attempts. Please try again in 5 minutes.", MAX_ATTEMPTS),
+                    String.format("Account locked due to %d failed attempts. Please try again in 5 minutes.", LoginThrottle.MAX_ATTEMPTS),
                     "Login Error",
                     JOptionPane.ERROR_MESSAGE);
             } else {
                 JOptionPane.showMessageDialog(this,
-                    String.format("Invalid PIN. %d attempts remaining.", MAX_ATTEMPTS - attempts),
+                    String.format("Invalid PIN. %d attempts remaining.", LoginThrottle.MAX_ATTEMPTS - attempts),
                     "Login Error",
                     JOptionPane.ERROR_MESSAGE);
             }
@@ -1427,27 +1396,13 @@ public class ATMInterface extends JFrame {
     }
 
     private void loadAccounts() {
-        File accountFile = new File("accounts.txt");
-        if (accountFile.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(accountFile))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] data = line.split(",");
-                    if (data.length == 4) {
-                        String accNum = data[0];
-                        String pin = data[1];
-                        String name = data[2];
-                        double balance = Double.parseDouble(data[3]);
-                        accounts.put(accNum, new Account(accNum, pin, balance, name));
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        if (accountStore.exists()) {
+            accounts.putAll(accountStore.load());
         } else {
+            accountStore.load();
             // Default accounts if file doesn't exist
-            accounts.put("1234", new Account("1234", "1234", 1000.0, "John Doe"));
-            accounts.put("5678", new Account("5678", "5678", 2000.0, "Jane Smith"));
+            accounts.put(new Account("1234", "1234", Money.ofCents(100000), "John Doe"));
+            accounts.put(new Account("5678", "5678", Money.ofCents(200000), "Jane Smith"));
             // Save default accounts to file
             for (Account acc : accounts.values()) {
                 saveAccountToFile(acc);
@@ -1658,8 +1613,8 @@ public class ATMInterface extends JFrame {
         balanceTitle.setBorder(BorderFactory.createEmptyBorder(15, 0, 15, 0));
         
         // Create LED-style balance amount display with enhanced visibility and glow effect
-        JLabel balanceAmount = new JLabel(String.format("₱%.2f", 
-            currentAccount != null ? currentAccount.getBalance() : 0.0));
+        JLabel balanceAmount = new JLabel(
+            currentAccount != null ? "₱" + currentAccount.getBalance() : "₱0.00");
         balanceAmount.setFont(new Font("Consolas", Font.BOLD, 72)); // Increased font size
         balanceAmount.setForeground(new Color(0, 255, 0));
         balanceAmount.setHorizontalAlignment(JLabel.CENTER);
@@ -1681,7 +1636,7 @@ public class ATMInterface extends JFrame {
             
             // Update balance in real-time with full precision
             if (currentAccount != null) {
-                balanceAmount.setText(String.format("₱%.2f", currentAccount.getBalance()));
+                balanceAmount.setText("₱" + currentAccount.getBalance());
             }
         });
         balanceEffectTimer.start();
@@ -1939,7 +1894,7 @@ public class ATMInterface extends JFrame {
                     // Record balance check in transaction history
                     currentAccount.addTransaction(new Transaction(
                         "Balance Inquiry",
-                        0.0,
+                        Money.ZERO,
                         currentAccount.getBalance(),
                         "Balance checked at ATM"
                     ));
@@ -1958,35 +1913,6 @@ public class ATMInterface extends JFrame {
         }
     }
 
-    @SuppressWarnings("unused")
-    private void showCashTransactionsMenu() {
-        JPanel cashPanel = createATMScreen("CASH TRANSACTIONS");
-        JPanel contentPanel = new JPanel(new GridLayout(3, 2, 20, 20));
-        contentPanel.setBackground(Color.BLACK);
-        contentPanel.setBorder(BorderFactory.createEmptyBorder(30, 30, 30, 30));
-
-        String[] options = {"WITHDRAW", "DEPOSIT", "QUICK ₱1000", "QUICK ₱5000", "QUICK ₱10000", "BACK"};
-        
-        for (String option : options) {
-            JButton button = createTransactionButton(option);
-            button.addActionListener(_ -> {
-                switch (option) {
-                    case "WITHDRAW" -> showWithdrawDialog();
-                    case "DEPOSIT" -> showDepositDialog();
-                    case "QUICK ₱1000" -> processWithdrawal(1000);
-                    case "QUICK ₱5000" -> processWithdrawal(5000);
-                    case "QUICK ₱10000" -> processWithdrawal(10000);
-                    case "BACK" -> cardLayout.show(mainPanel, "mainMenu");
-                }
-            });
-            contentPanel.add(button);
-        }
-
-        cashPanel.add(contentPanel, BorderLayout.CENTER);
-        mainPanel.add(cashPanel, "cashTransactions");
-        cardLayout.show(mainPanel, "cashTransactions");
-    }
-
     private void showLogoutConfirmation() {
         JPanel confirmPanel = new JPanel(new BorderLayout(10, 10));
         confirmPanel.setBackground(new Color(0, 20, 40));
@@ -2040,29 +1966,6 @@ public class ATMInterface extends JFrame {
         }
     }
 
-    private void processWithdrawal(double amount) {
-        if (amount <= 0) {
-            showErrorScreen("Please enter a valid amount!");
-            return;
-        }
-        if (amount > currentAccount.getBalance()) {
-            showErrorScreen("Insufficient funds!");
-            return;
-        }
-        if (amount % 100 != 0) {
-            showErrorScreen("Amount must be in multiples of 100!");
-            return;
-        }
-        
-        // Process withdrawal
-        currentAccount.withdraw(amount);
-        saveAccountToFile(currentAccount);
-        playSound("cash");
-        
-        // Show success screen with receipt option
-        showReceiptOptionScreen("QUICK WITHDRAWAL", amount);
-    }
-
     @SuppressWarnings("unused")
     private void showOtherServicesMenu() {
         JPanel servicesPanel = createATMScreen("OTHER SERVICES");
@@ -2107,7 +2010,7 @@ public class ATMInterface extends JFrame {
         StringBuilder sb = new StringBuilder();
         sb.append("Account Number: ").append(currentAccount.getAccountNumber())
           .append("\nAccount Holder: ").append(currentAccount.getAccountHolder())
-          .append("\nCurrent Balance: ₱").append(String.format("%,.2f", currentAccount.getBalance()))
+          .append("\nCurrent Balance: ").append(currentAccount.getBalance().toDisplayString())
           .append("\n\nRecent Transactions:\n");
 
         // Add recent transactions (last 5)
@@ -2250,9 +2153,8 @@ public class ATMInterface extends JFrame {
             }
 
             // Update PIN
-            currentAccount.setPin(newPin);
-            saveAccountToFile(currentAccount);
-            showSuccessScreen("PIN changed successfully!", "PIN CHANGE", 0.0);
+            onApplied(engine.changePin(currentAccount, newPin),
+                () -> showSuccessScreen("PIN changed successfully!", "PIN CHANGE", 0.0));
         });
 
         cancelButton.addActionListener(_ -> {
@@ -2350,8 +2252,8 @@ public class ATMInterface extends JFrame {
         receiptContent.append("\n");
         addReceiptLine(contentPanel, String.format("%-15s ₱%,16.2f", "AMOUNT:", amount), gbc, 16);
         receiptContent.append(String.format("%-15s ₱%,16.2f\n", "AMOUNT:", amount));
-        addReceiptLine(contentPanel, String.format("%-15s ₱%,16.2f", "BALANCE:", currentAccount.getBalance()), gbc, 16);
-        receiptContent.append(String.format("%-15s ₱%,16.2f\n", "BALANCE:", currentAccount.getBalance()));
+        addReceiptLine(contentPanel, String.format("%-15s ₱%,16.2f", "BALANCE:", currentAccount.getBalance().toDouble()), gbc, 16);
+        receiptContent.append(String.format("%-15s ₱%,16.2f\n", "BALANCE:", currentAccount.getBalance().toDouble()));
         addReceiptLine(contentPanel, "\n", gbc, 14);
         receiptContent.append("\n");
         addReceiptLine(contentPanel, "================================", gbc, 16);
@@ -2621,7 +2523,7 @@ public class ATMInterface extends JFrame {
             BorderFactory.createEmptyBorder(10, 10, 10, 10)
         ));
 
-        JLabel balanceLabel = new JLabel(String.format("Available Balance: ₱%,.2f", currentAccount.getBalance()));
+        JLabel balanceLabel = new JLabel("Available Balance: " + currentAccount.getBalance().toDisplayString());
         balanceLabel.setFont(new Font("Consolas", Font.BOLD, 24));
         balanceLabel.setForeground(new Color(0, 255, 255));
         balanceLabel.setHorizontalAlignment(SwingConstants.CENTER);
@@ -2737,18 +2639,19 @@ public class ATMInterface extends JFrame {
         cardLayout.show(mainPanel, "withdraw");
 
         // Enhanced action listeners with animations
+        String requestId = UUID.randomUUID().toString();
         withdrawButton.addActionListener(_ -> {
             try {
-                double amount = Double.parseDouble(amountField.getText());
-                if (amount <= 0) {
+                Money amount = Money.parse(amountField.getText().trim());
+                if (!amount.isPositive()) {
                     showErrorScreen("Please enter a valid amount!");
                     return;
                 }
-                if (amount > currentAccount.getBalance()) {
+                if (amount.isGreaterThan(currentAccount.getBalance())) {
                     showErrorScreen("Insufficient funds!");
                     return;
                 }
-                if (amount % 100 != 0) {
+                if (!amount.isMultipleOf(100)) {
                     showErrorScreen("Amount must be in multiples of 100!");
                     return;
                 }
@@ -2778,18 +2681,19 @@ public class ATMInterface extends JFrame {
                 processingDialog.add(processingPanel);
 
                 // Process withdrawal after brief animation
-                Timer processTimer = new Timer(1500, _ -> {
-                    processingDialog.dispose();
-                    currentAccount.withdraw(amount);
-                    saveAccountToFile(currentAccount);
-                    playSound("cash");
-                    showReceiptOptionScreen("WITHDRAWAL", amount);
-                });
+                Timer processTimer = new Timer(1500, _ -> onApplied(
+                    engine.withdraw(requestId, currentAccount, amount, TransactionLimits.Channel.ATM),
+                    () -> {
+                        processingDialog.dispose();
+                        playSound("cash");
+                        showReceiptOptionScreen("WITHDRAWAL", amount.toDouble());
+                    },
+                    processingDialog::dispose));
                 processTimer.setRepeats(false);
                 processTimer.start();
 
                 processingDialog.setVisible(true);
-            } catch (NumberFormatException ex) {
+            } catch (NumberFormatException | ArithmeticException ex) {
                 showErrorScreen("Please enter a valid amount!");
             }
         });
@@ -2846,7 +2750,7 @@ public class ATMInterface extends JFrame {
             BorderFactory.createEmptyBorder(10, 10, 10, 10)
         ));
 
-        JLabel balanceLabel = new JLabel(String.format("Current Balance: ₱%,.2f", currentAccount.getBalance()));
+        JLabel balanceLabel = new JLabel("Current Balance: " + currentAccount.getBalance().toDisplayString());
         balanceLabel.setFont(new Font("Consolas", Font.BOLD, 24));
         balanceLabel.setForeground(new Color(0, 255, 255));
         balanceLabel.setHorizontalAlignment(SwingConstants.CENTER);
@@ -2947,27 +2851,26 @@ public class ATMInterface extends JFrame {
         cardLayout.show(mainPanel, "deposit");
 
         // Enhanced action listeners with animations
+        String requestId = UUID.randomUUID().toString();
         depositButton.addActionListener(_ -> {
             try {
-                double amount = Double.parseDouble(amountField.getText());
-                if (amount <= 0) {
+                Money amount = Money.parse(amountField.getText().trim());
+                if (!amount.isPositive()) {
                     showErrorScreen("Please enter a valid amount!");
                     return;
                 }
-                if (amount % 100 != 0) {
+                if (!amount.isMultipleOf(100)) {
                     showErrorScreen("Amount must be in multiples of 100!");
                     return;
                 }
                 
-                // Process deposit first
-                currentAccount.deposit(amount);
-                saveAccountToFile(currentAccount);
-                playSound("card");
-                
-                // Show success screen with receipt option
-                showReceiptOptionScreen("DEPOSIT", amount);
-                
-            } catch (NumberFormatException ex) {
+                // Process deposit first, then show success screen with receipt option
+                onApplied(engine.deposit(requestId, currentAccount, amount, TransactionLimits.Channel.ATM), () -> {
+                    playSound("card");
+                    showReceiptOptionScreen("DEPOSIT", amount.toDouble());
+                });
+
+            } catch (NumberFormatException | ArithmeticException ex) {
                 showErrorScreen("Please enter a valid amount!");
             }
         });
@@ -3025,7 +2928,7 @@ public class ATMInterface extends JFrame {
             BorderFactory.createEmptyBorder(10, 10, 10, 10)
         ));
 
-        JLabel balanceLabel = new JLabel(String.format("Available Balance: ₱%,.2f", currentAccount.getBalance()));
+        JLabel balanceLabel = new JLabel("Available Balance: " + currentAccount.getBalance().toDisplayString());
         balanceLabel.setFont(new Font("Consolas", Font.BOLD, 24));
         balanceLabel.setForeground(new Color(0, 255, 255));
         balanceLabel.setHorizontalAlignment(SwingConstants.CENTER);
@@ -3184,27 +3087,28 @@ public class ATMInterface extends JFrame {
         cardLayout.show(mainPanel, "transfer");
 
         // Action listeners
+        String requestId = UUID.randomUUID().toString();
         transferButton.addActionListener(_ -> {
             try {
                 String recipientAccNum = accountField.getText();
-                double amount = Double.parseDouble(amountField.getText());
+                Money amount = Money.parse(amountField.getText().trim());
 
                 // Validate recipient account
-                if (!accounts.containsKey(recipientAccNum)) {
+                if (!accounts.contains(recipientAccNum)) {
                     showErrorScreen("Recipient account not found!");
                     return;
                 }
 
                 // Validate amount
-                if (amount <= 0) {
+                if (!amount.isPositive()) {
                     showErrorScreen("Please enter a valid amount!");
                     return;
                 }
-                if (amount > currentAccount.getBalance()) {
+                if (amount.isGreaterThan(currentAccount.getBalance())) {
                     showErrorScreen("Insufficient funds!");
                     return;
                 }
-                if (amount % 100 != 0) {
+                if (!amount.isMultipleOf(100)) {
                     showErrorScreen("Amount must be in multiples of 100!");
                     return;
                 }
@@ -3213,16 +3117,15 @@ public class ATMInterface extends JFrame {
                 Account recipientAccount = accounts.get(recipientAccNum);
                 String description = String.format("Transfer between %s and %s", 
                     currentAccount.getAccountHolder(), recipientAccount.getAccountHolder());
-                currentAccount.transfer(amount, recipientAccount, description);
-                saveAccountToFile(currentAccount);
-                saveAccountToFile(recipientAccount);
-                playSound("card");
-                
                 // Show success screen with receipt option and transfer details
-                showReceiptOptionScreen("TRANSFER", amount, 
-                    String.format("To: %s (%s)", recipientAccount.getAccountHolder(), recipientAccNum));
-                
-            } catch (NumberFormatException ex) {
+                onApplied(engine.transfer(requestId, currentAccount, amount, recipientAccount,
+                    description, TransactionLimits.Channel.ATM), () -> {
+                    playSound("card");
+                    showReceiptOptionScreen("TRANSFER", amount.toDouble(),
+                        String.format("To: %s (%s)", recipientAccount.getAccountHolder(), recipientAccNum));
+                });
+
+            } catch (NumberFormatException | ArithmeticException ex) {
                 showErrorScreen("Please enter a valid amount!");
             }
         });
@@ -3311,7 +3214,7 @@ public class ATMInterface extends JFrame {
         
         // Balance and status information
         addReceiptLine(contentPanel, "══════════════════════════════", gbc, 16);
-        addReceiptLine(contentPanel, String.format("%-22s ₱%,15.2f", "BALANCE:", currentAccount.getBalance()), gbc, 18);
+        addReceiptLine(contentPanel, String.format("%-22s ₱%,15.2f", "BALANCE:", currentAccount.getBalance().toDouble()), gbc, 18);
         addReceiptLine(contentPanel, "══════════════════════════════", gbc, 16);
         
         // Transaction details
@@ -3382,7 +3285,7 @@ doneButton = new JButton("DONE") {
         JLabel messageLabel = new JLabel("<html><div style='text-align: center;'>" + 
             message + "<br><br>" +
             "Amount: ₱" + String.format("%,.2f", amount) + "<br>" +
-            "Balance: ₱" + String.format("%,.2f", currentAccount.getBalance()) +
+            "Balance: " + currentAccount.getBalance().toDisplayString() +
             "</div></html>");
         messageLabel.setForeground(Color.GREEN);
         messageLabel.setFont(new Font("Consolas", Font.BOLD, 18));
@@ -3545,6 +3448,23 @@ doneButton = new JButton("DONE") {
         SwingUtilities.invokeLater(() -> new ATMInterface());
     }
 
+    // Leaves the event thread free while the engine applies the command, then
+    // shows the result on it: onSuccess, or the error screen with the reason
+    private void onApplied(CompletableFuture<Void> future, Runnable onSuccess) {
+        onApplied(future, onSuccess, () -> { });
+    }
+
+    private void onApplied(CompletableFuture<Void> future, Runnable onSuccess, Runnable onFailure) {
+        future.whenComplete((ignored, failure) -> SwingUtilities.invokeLater(() -> {
+            if (failure == null) {
+                onSuccess.run();
+            } else {
+                onFailure.run();
+                showErrorScreen(TransactionEngine.cause(failure).getMessage());
+            }
+        }));
+    }
+
     private void showErrorScreen(String message) {
         JPanel errorPanel = createATMScreen("ERROR");
         JPanel contentPanel = new JPanel(new GridBagLayout());
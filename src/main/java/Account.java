@@ -1,5 +1,7 @@
 package main.java;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.List;
 import javax.swing.*;
@@ -9,18 +11,33 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 
 
+// The balance is held in centavos and only changed with compare-and-set
+// loops, so the funds check cannot race with another debit. The front ends
+// route balance and PIN changes through TransactionEngine, which applies each
+// account's operations in order on one shard thread. Velocity limits are
+// checked by TransactionLimits before any money moves.
 public class Account {
-    private String accountNumber;
-    private String pin;
-    private double balance;
-    private String accountHolder;
-    private List<Transaction> transactionHistory;
-    private boolean blocked;
-    private boolean deleted;
-    private String deletionReason;
-    private int dailyTransactionCount;
-    private long lastTransactionDate;
-    private static final int MAX_DAILY_TRANSACTIONS = 10;
+    private static final VarHandle BALANCE_CENTS;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            BALANCE_CENTS = lookup.findVarHandle(Account.class, "balanceCents", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile String accountNumber;
+    private volatile String pin;
+    private volatile long balanceCents;
+    private volatile String accountHolder;
+    private final TransactionRing transactionHistory;
+    private volatile boolean blocked;
+    private volatile boolean deleted;
+    private volatile String deletionReason;
+    private final TransactionLimits limits = new TransactionLimits();
+    private static final int HISTORY_CAPACITY = Integer.getInteger("atm.history.capacity", 50);
     private static final String LOCALHOST = "127.0.0.1";
     
     public static boolean isLocalAccess() {
@@ -41,19 +58,18 @@ public class Account {
         return null; // null means validation passed
     }
 
-    public Account(String accountNumber, String pin, double balance, String accountHolder) {
+    public Account(String accountNumber, String pin, Money balance, String accountHolder) {
         this.accountNumber = accountNumber;
         this.pin = pin;
-        this.balance = balance;
+        this.balanceCents = balance.getCents();
         this.accountHolder = accountHolder;
-        this.transactionHistory = new ArrayList<>();
+        this.transactionHistory = new TransactionRing(HISTORY_CAPACITY);
         this.blocked = false;
         this.deleted = false;
         this.deletionReason = null;
-        this.dailyTransactionCount = 0;
-        this.lastTransactionDate = System.currentTimeMillis();
         // Add initial deposit as first transaction
-        addTransaction("INITIAL_DEPOSIT", balance, balance, "Account opening deposit");
+        transactionHistory.add("INITIAL_DEPOSIT", balance.getCents(), balance.getCents(), System.currentTimeMillis(),
+            "Account opening deposit");
     }
 
     public String getAccountNumber() {
@@ -66,11 +82,15 @@ public class Account {
 
     public void setPin(String pin) {
         this.pin = pin;
-        addTransaction("PIN_CHANGE", 0.0, balance, "PIN changed");
+        addTransaction("PIN_CHANGE", Money.ZERO, getBalance(), "PIN changed");
+    }
+
+    public Money getBalance() {
+        return Money.ofCents(balanceCents);
     }
 
-    public double getBalance() {
-        return balance;
+    public long getBalanceCents() {
+        return balanceCents;
     }
 
     public String getAccountHolder() {
@@ -79,7 +99,7 @@ public class Account {
 
     public void setAccountHolder(String accountHolder) {
         this.accountHolder = accountHolder;
-        addTransaction("ACCOUNT_UPDATE", 0.0, balance, "Account holder updated");
+        addTransaction("ACCOUNT_UPDATE", Money.ZERO, getBalance(), "Account holder updated");
     }
 
     public void setAccountNumber(String newAccountNumber) {
@@ -89,9 +109,8 @@ public class Account {
         }
         String oldAccountNumber = this.accountNumber;
         this.accountNumber = newAccountNumber;
-        addTransaction("ACCOUNT_NUMBER_CHANGE", 0.0, balance, 
-            String.format("Account number changed from %s to %s", oldAccountNumber, newAccountNumber));
-        TransactionHistory.saveTransaction(newAccountNumber, "ACCOUNT_NUMBER_CHANGE", 0.0, accountHolder);
+        recordTransaction("ACCOUNT_NUMBER_CHANGE", Money.ZERO, getBalance(), 
+            String.format("Account number changed from %s to %s", oldAccountNumber, newAccountNumber), accountHolder);
     }
 
     public static String validatePin(String pin) {
@@ -113,11 +132,10 @@ public class Account {
             throw new IllegalArgumentException(validationResult);
         }
         this.pin = newPin;
-        addTransaction("PIN_CHANGE", 0.0, balance, "PIN updated successfully");
-        TransactionHistory.saveTransaction(accountNumber, "PIN_CHANGE", 0.0, accountHolder);
+        recordTransaction("PIN_CHANGE", Money.ZERO, getBalance(), "PIN updated successfully", accountHolder);
     }
 
-    public void updateAccount(String newAccountNumber, String oldPin, String newPin, String newAccountHolder, double depositAmount) {
+    public void updateAccount(String newAccountNumber, String oldPin, String newPin, String newAccountHolder, Money depositAmount) {
         if (deleted) {
             throw new IllegalStateException("Account has been deleted: " + deletionReason);
         }
@@ -146,76 +164,117 @@ public class Account {
         }
         
         // Process deposit if amount is provided
-        if (depositAmount > 0) {
+        if (depositAmount != null && depositAmount.isPositive()) {
             deposit(depositAmount);
         }
     }
 
-    public void deposit(double amount) {
+    public void deposit(Money amount) {
+        deposit(amount, TransactionLimits.Channel.ATM);
+    }
+
+    public void deposit(Money amount, TransactionLimits.Channel channel) {
         if (deleted) {
             throw new IllegalStateException("Account has been deleted: " + deletionReason);
         }
-        if (amount <= 0) {
+        if (!amount.isPositive()) {
             throw new IllegalArgumentException("Deposit amount must be positive");
         }
-        checkTransactionLimit();
-        this.balance += amount;
-        addTransaction("DEPOSIT", amount, this.balance, "Cash deposit");
-        TransactionHistory.saveTransaction(accountNumber, "DEPOSIT", amount, accountHolder);
-        updateTransactionCount();
+        long reservedMinute = limits.reserve(channel, 0, System.currentTimeMillis());
+        long newBalance;
+        try {
+            newBalance = credit(amount.getCents());
+        } catch (IllegalStateException e) {
+            limits.release(channel, 0, reservedMinute);
+            throw e;
+        }
+        recordTransaction("DEPOSIT", amount, Money.ofCents(newBalance), "Cash deposit", accountHolder);
+    }
+
+    public void withdraw(Money amount) {
+        withdraw(amount, TransactionLimits.Channel.ATM);
     }
 
-    public void withdraw(double amount) {
+    public void withdraw(Money amount, TransactionLimits.Channel channel) {
         if (deleted) {
             throw new IllegalStateException("Account has been deleted: " + deletionReason);
         }
-        if (amount <= 0) {
+        if (!amount.isPositive()) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
-        if (amount > this.balance) {
+        long reservedMinute = limits.reserve(channel, amount.getCents(), System.currentTimeMillis());
+        long newBalance = debit(amount.getCents());
+        if (newBalance < 0) {
+            limits.release(channel, amount.getCents(), reservedMinute);
             throw new IllegalStateException("Insufficient funds");
         }
-        checkTransactionLimit();
-        this.balance -= amount;
-        addTransaction("WITHDRAWAL", amount, this.balance, "Cash withdrawal");
-        TransactionHistory.saveTransaction(accountNumber, "WITHDRAWAL", amount, accountHolder);
-        updateTransactionCount();
+        recordTransaction("WITHDRAWAL", amount, Money.ofCents(newBalance), "Cash withdrawal", accountHolder);
+    }
+
+    public void transfer(Money amount, Account recipient, String description) {
+        transferOut(amount, recipient, description, TransactionLimits.Channel.ATM);
+        recipient.transferIn(amount, this, description);
     }
 
-    public void transfer(double amount, Account recipient, String description) {
+    // Debit half of a transfer. TransactionEngine runs it on the sender's
+    // shard and then transferIn on the recipient's.
+    void transferOut(Money amount, Account recipient, String description, TransactionLimits.Channel channel) {
         if (deleted) {
             throw new IllegalStateException("Account has been deleted: " + deletionReason);
         }
         if (recipient.isDeleted()) {
             throw new IllegalStateException("Recipient account has been deleted: " + recipient.getDeletionReason());
         }
-        if (amount <= 0) {
+        if (!amount.isPositive()) {
             throw new IllegalArgumentException("Transfer amount must be positive");
         }
-        if (amount > this.balance) {
+        long reservedMinute = limits.reserve(channel, amount.getCents(), System.currentTimeMillis());
+        long newBalance = debit(amount.getCents());
+        if (newBalance < 0) {
+            limits.release(channel, amount.getCents(), reservedMinute);
             throw new IllegalStateException("Insufficient funds for transfer");
         }
-        checkTransactionLimit();
-        this.balance -= amount;
-        recipient.balance += amount;
-        
         // Record transaction for sender with standardized receipt format
-        String senderDesc = String.format("TRANSFER TO:\n  Account: %s\n  Name: %s\n  Amount: ₱%.2f\n  Description: %s", 
+        String senderDesc = String.format("TRANSFER TO:\n  Account: %s\n  Name: %s\n  Amount: ₱%s\n  Description: %s", 
             recipient.getAccountNumber(), 
             recipient.getAccountHolder(),
             amount,
             description);
-        addTransaction("TRANSFER_OUT", amount, this.balance, senderDesc);
-        TransactionHistory.saveTransaction(accountNumber, "TRANSFER_OUT", amount, senderDesc);
-        
+        recordTransaction("TRANSFER_OUT", amount, Money.ofCents(newBalance), senderDesc, senderDesc);
+    }
+
+    // Debit half of a batch transfer: the whole batch leaves the account as
+    // one debit and counts as one transaction against the limits
+    void batchOut(Money total, int recipients, String description, TransactionLimits.Channel channel) {
+        if (deleted) {
+            throw new IllegalStateException("Account has been deleted: " + deletionReason);
+        }
+        long reservedMinute = limits.reserve(channel, total.getCents(), System.currentTimeMillis());
+        long newBalance = debit(total.getCents());
+        if (newBalance < 0) {
+            limits.release(channel, total.getCents(), reservedMinute);
+            throw new IllegalStateException("Insufficient funds for batch transfer");
+        }
+        String senderDesc = String.format("BATCH TRANSFER:\n  Recipients: %d\n  Amount: ₱%s\n  Description: %s",
+            recipients, total, description);
+        recordTransaction("TRANSFER_OUT", total, Money.ofCents(newBalance), senderDesc, senderDesc);
+    }
+
+    // Returns the part of a transfer or batch debit that could not be credited
+    void refund(Money amount, String description) {
+        long newBalance = credit(amount.getCents());
+        recordTransaction("TRANSFER_REFUND", amount, Money.ofCents(newBalance), description, description);
+    }
+
+    void transferIn(Money amount, Account sender, String description) {
+        long newBalance = credit(amount.getCents());
         // Record transaction for recipient with standardized receipt format
-        String recipientDesc = String.format("TRANSFER FROM:\n  Account: %s\n  Name: %s\n  Amount: ₱%.2f\n  Description: %s", 
-            this.accountNumber,
-            this.accountHolder,
+        String recipientDesc = String.format("TRANSFER FROM:\n  Account: %s\n  Name: %s\n  Amount: ₱%s\n  Description: %s", 
+            sender.getAccountNumber(),
+            sender.getAccountHolder(),
             amount,
             description);
-        recipient.addTransaction("TRANSFER_IN", amount, recipient.balance, recipientDesc);
-        TransactionHistory.saveTransaction(recipient.getAccountNumber(), "TRANSFER_IN", amount, recipientDesc);
+        recordTransaction("TRANSFER_IN", amount, Money.ofCents(newBalance), recipientDesc, recipientDesc);
     }
 
     public void checkBalance() {
@@ -278,12 +337,11 @@ public class Account {
             protected void done() {
                 timer.stop();
                 loadingDialog.dispose();
-                addTransaction("BALANCE_CHECK", 0.0, balance, "Balance inquiry");
-                TransactionHistory.saveTransaction(accountNumber, "BALANCE_CHECK", 0.0, accountHolder);
+                recordTransaction("BALANCE_CHECK", Money.ZERO, getBalance(), "Balance inquiry", accountHolder);
                 
                 // Show balance in a new dialog
                 JOptionPane.showMessageDialog(null,
-                    String.format("Current Balance: ₱%.2f", balance),
+                    "Current Balance: " + getBalance().toDisplayString(),
                     "Balance Information",
                     JOptionPane.INFORMATION_MESSAGE);
             }
@@ -295,8 +353,7 @@ public class Account {
 
     public void ejectCard() {
         if (!deleted) {
-            addTransaction("CARD_EJECTED", 0.0, balance, "Card ejected from ATM");
-            TransactionHistory.saveTransaction(accountNumber, "CARD_EJECTED", 0.0, accountHolder);
+            recordTransaction("CARD_EJECTED", Money.ZERO, getBalance(), "Card ejected from ATM", accountHolder);
         }
     }
 
@@ -312,46 +369,97 @@ public class Account {
         this.deleted = deleted;
         this.deletionReason = reason;
         if (deleted) {
-            addTransaction("ACCOUNT_DELETED", 0.0, balance, "Account deleted: " + reason);
+            addTransaction("ACCOUNT_DELETED", Money.ZERO, getBalance(), "Account deleted: " + reason);
         }
     }
 
-    private void checkTransactionLimit() {
-        long currentTime = System.currentTimeMillis();
-        long oneDayInMillis = 24 * 60 * 60 * 1000;
-
-        if (currentTime - lastTransactionDate > oneDayInMillis) {
-            dailyTransactionCount = 0;
-            lastTransactionDate = currentTime;
-        }
-
-        if (dailyTransactionCount >= MAX_DAILY_TRANSACTIONS) {
-            throw new IllegalStateException("Daily transaction limit reached. Please try again tomorrow.");
-        }
+    // Subtracts cents unless that would overdraw the account. Returns the new
+    // balance, or -1 if the funds were insufficient.
+    private long debit(long cents) {
+        long current;
+        do {
+            current = balanceCents;
+            if (cents > current) {
+                return -1;
+            }
+        } while (!BALANCE_CENTS.compareAndSet(this, current, current - cents));
+        return current - cents;
     }
 
-    private void updateTransactionCount() {
-        dailyTransactionCount++;
+    // Adds cents to the balance and returns the new balance, or throws
+    // without changing it if the sum would overflow
+    private long credit(long cents) {
+        long current;
+        long updated;
+        do {
+            current = balanceCents;
+            try {
+                updated = Math.addExact(current, cents);
+            } catch (ArithmeticException e) {
+                throw new IllegalStateException("Balance limit exceeded");
+            }
+        } while (!BALANCE_CENTS.compareAndSet(this, current, updated));
+        return updated;
     }
 
+
     public boolean isBlocked() {
         return blocked;
     }
 
     public void setBlocked(boolean blocked) {
-        this.blocked = blocked;
         String status = blocked ? "ACCOUNT_BLOCKED" : "ACCOUNT_UNBLOCKED";
-        addTransaction(status, 0.0, balance, blocked ? "Account blocked by admin" : "Account unblocked by admin");
-        TransactionHistory.saveTransaction(accountNumber, status, 0.0, accountHolder);
+        this.blocked = blocked;
+        recordTransaction(status, Money.ZERO, getBalance(),
+            blocked ? "Account blocked by admin" : "Account unblocked by admin", accountHolder);
     }
 
+    // The most recent HISTORY_CAPACITY entries, oldest first
     public List<Transaction> getTransactionHistory() {
-        return transactionHistory;
+        return transactionHistory.snapshot();
+    }
+
+    public boolean hasEarlierTransactions() {
+        return transactionHistory.hasDropped();
+    }
+
+    // Logged transactions older than the in-memory history, read on demand.
+    // The log has no sequence numbers, so records at the oldest held timestamp
+    // are read as well and those that are still held are dropped again.
+    public List<TransactionHistory.Transaction> getEarlierTransactions() {
+        TransactionRing.Cursor cursor = transactionHistory.cursor();
+        if (!transactionHistory.hasDropped() || !cursor.next()) {
+            return new ArrayList<>();
+        }
+        long oldest = cursor.getTimestamp();
+        List<TransactionHistory.Transaction> earlier = TransactionHistory.getTransactions(accountNumber, Long.MIN_VALUE, oldest);
+        do {
+            for (int i = earlier.size() - 1; i >= 0 && earlier.get(i).timestamp == oldest; i--) {
+                TransactionHistory.Transaction logged = earlier.get(i);
+                if (logged.type.equals(cursor.getType()) && logged.amount.getCents() == cursor.getAmountCents()) {
+                    earlier.remove(i);
+                    break;
+                }
+            }
+        } while (cursor.next() && cursor.getTimestamp() == oldest);
+        return earlier;
+    }
+
+    // Reads the history in place without building Transaction objects
+    public TransactionRing.Cursor getTransactionCursor() {
+        return transactionHistory.cursor();
+    }
+
+    public void addTransaction(String type, Money amount, Money newBalance, String description) {
+        transactionHistory.add(type, amount.getCents(), newBalance.getCents(), System.currentTimeMillis(), description);
     }
 
-    public void addTransaction(String type, double amount, double newBalance, String description) {
-        Transaction transaction = new Transaction(type, amount, newBalance, description);
-        transactionHistory.add(transaction);
+    // Adds to the history and logs with one timestamp, so getEarlierTransactions
+    // can tell the logged copy of a held entry apart from older records
+    private void recordTransaction(String type, Money amount, Money newBalance, String description, String logDescription) {
+        long now = System.currentTimeMillis();
+        transactionHistory.add(type, amount.getCents(), newBalance.getCents(), now, description);
+        TransactionHistory.saveTransaction(accountNumber, type, amount, now, logDescription);
     }
 
     public void addTransaction(Transaction transaction) {
@@ -0,0 +1,331 @@
+package main.java;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Append-only account ledger. accounts.txt is the base image, every mutation
+// after that is appended to accounts.log as one checksummed record:
+//   [int payloadLength][int crc32][byte type][accNum][pin][name][long balanceCents]
+// saveAll writes one batch record holding several accounts, so a crash
+// recovers either all of them or none:
+//   [int payloadLength][int crc32][byte type][int count]([accNum][pin][name][long balanceCents])*
+// Strings are stored as an unsigned short length followed by UTF-8 bytes.
+// Logs written before balances were kept in centavos hold a double balance
+// in pesos under record types 1 and 2; replay still reads those.
+// A background snapshot periodically rewrites accounts.txt from the current
+// state and truncates the log, so replay on startup only covers a short tail.
+public class AccountLedger implements AccountStore {
+    private static final byte RECORD_PUT_DOUBLE = 1;
+    private static final byte RECORD_BATCH_DOUBLE = 2;
+    private static final byte RECORD_PUT = 3;
+    private static final byte RECORD_BATCH = 4;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 4096;
+    private static final int MAX_BATCH_SIZE = 64 * 1024 * 1024;
+    private static final int FSYNC_BATCH_SIZE = 32;
+    private static final long FSYNC_INTERVAL_MS = 200;
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 60;
+
+    private final File snapshotFile;
+    private final File logFile;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(MAX_RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService syncScheduler;
+    private final Map<String, Entry> state = new LinkedHashMap<>();
+    private FileChannel channel;
+    private int unsyncedRecords;
+
+    private static class Entry {
+        String pin;
+        String name;
+        Money balance;
+    }
+
+    private AccountLedger(String snapshotPath, String logPath) {
+        this.snapshotFile = new File(snapshotPath);
+        this.logFile = new File(logPath);
+        this.syncScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "account-ledger-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // The background sync, snapshot and shutdown hook are started here
+    // rather than in the constructor, so they never see a half-built ledger
+    public static AccountLedger open(String snapshotPath, String logPath) {
+        AccountLedger ledger = new AccountLedger(snapshotPath, logPath);
+        ledger.start();
+        return ledger;
+    }
+
+    private void start() {
+        syncScheduler.scheduleWithFixedDelay(this::sync, FSYNC_INTERVAL_MS, FSYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        long snapshotInterval = Long.getLong("atm.snapshot.intervalSeconds", DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+        syncScheduler.scheduleWithFixedDelay(this::snapshot, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    @Override
+    public boolean exists() {
+        return snapshotFile.exists() || logFile.exists();
+    }
+
+    @Override
+    public synchronized Map<String, Account> load() {
+        Map<String, Entry> entries = state;
+        entries.clear();
+        loadSnapshot(entries);
+        try {
+            long validLength = replayLog(entries);
+            channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (channel.size() > validLength) {
+                // Drop a torn record left behind by a crash mid-append
+                System.err.println("Truncating corrupt account ledger tail at offset " + validLength);
+                channel.truncate(validLength);
+            }
+            channel.position(validLength);
+        } catch (IOException e) {
+            System.err.println("Error opening account ledger: " + e.getMessage());
+        }
+
+        Map<String, Account> accounts = new HashMap<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            accounts.put(e.getKey(), new Account(e.getKey(), entry.pin, entry.balance, entry.name));
+        }
+        return accounts;
+    }
+
+    @Override
+    public synchronized void save(Account account) {
+        if (channel == null) {
+            System.err.println("Account ledger is not open, dropping update for " + account.getAccountNumber());
+            return;
+        }
+        recordBuffer.clear();
+        recordBuffer.position(HEADER_SIZE);
+        recordBuffer.put(RECORD_PUT);
+        encode(account);
+        remember(account);
+        try {
+            writeRecord(recordBuffer);
+            if (++unsyncedRecords >= FSYNC_BATCH_SIZE) {
+                sync();
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending to account ledger: " + e.getMessage());
+        }
+    }
+
+    // One batch record, synced before returning
+    @Override
+    public synchronized void saveAll(Collection<Account> accounts) {
+        if (channel == null) {
+            System.err.println("Account ledger is not open, dropping batch of " + accounts.size() + " updates");
+            return;
+        }
+        if (accounts.isEmpty()) {
+            return;
+        }
+        ByteBuffer batch = ByteBuffer.allocate(Math.max(MAX_RECORD_SIZE, HEADER_SIZE + 5 + accounts.size() * 64));
+        batch.position(HEADER_SIZE);
+        batch.put(RECORD_BATCH);
+        batch.putInt(accounts.size());
+        for (Account account : accounts) {
+            recordBuffer.clear();
+            encode(account);
+            recordBuffer.flip();
+            if (batch.remaining() < recordBuffer.remaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(batch.capacity() * 2, batch.position() + recordBuffer.remaining()));
+                batch.flip();
+                batch = larger.put(batch);
+            }
+            batch.put(recordBuffer);
+        }
+        if (batch.position() - HEADER_SIZE > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Account batch too large for ledger record");
+        }
+        for (Account account : accounts) {
+            remember(account);
+        }
+        try {
+            writeRecord(batch);
+            unsyncedRecords++;
+            sync();
+        } catch (IOException e) {
+            System.err.println("Error appending to account ledger: " + e.getMessage());
+        }
+    }
+
+    // Writes the account fields at the record buffer's position
+    private void encode(Account account) {
+        putString(account.getAccountNumber());
+        putString(account.getPin());
+        putString(account.getAccountHolder());
+        recordBuffer.putLong(account.getBalance().getCents());
+    }
+
+    private void remember(Account account) {
+        Entry entry = new Entry();
+        entry.pin = account.getPin();
+        entry.name = account.getAccountHolder();
+        entry.balance = account.getBalance();
+        state.put(account.getAccountNumber(), entry);
+    }
+
+    // Fills in the header of a record whose payload ends at the buffer's position and appends it
+    private void writeRecord(ByteBuffer record) throws IOException {
+        int payloadLength = record.position() - HEADER_SIZE;
+        crc.reset();
+        crc.update(record.array(), HEADER_SIZE, payloadLength);
+        record.putInt(0, payloadLength);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    public synchronized void sync() {
+        if (channel == null || unsyncedRecords == 0) {
+            return;
+        }
+        try {
+            channel.force(false);
+            unsyncedRecords = 0;
+        } catch (IOException e) {
+            System.err.println("Error syncing account ledger: " + e.getMessage());
+        }
+    }
+
+    // Writes the current state as the new accounts.txt and empties the log.
+    // A crash between the rename and the truncate is harmless: replaying the
+    // old log over the new snapshot yields the same state.
+    public synchronized void snapshot() {
+        try {
+            if (channel == null || channel.size() == 0) {
+                return;
+            }
+            AtomicFile.write(snapshotFile, out -> {
+                for (Map.Entry<String, Entry> e : state.entrySet()) {
+                    Entry entry = e.getValue();
+                    out.println(e.getKey() + "," + entry.pin + "," + entry.name + "," + entry.balance);
+                }
+            });
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(false);
+            unsyncedRecords = 0;
+        } catch (IOException e) {
+            System.err.println("Error writing account snapshot: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        syncScheduler.shutdown();
+        if (channel == null) {
+            return;
+        }
+        snapshot();
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing account ledger: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF || recordBuffer.remaining() < bytes.length + 2 + Long.BYTES) {
+            throw new IllegalArgumentException("Account field too long for ledger record");
+        }
+        recordBuffer.putShort((short) bytes.length);
+        recordBuffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private void loadSnapshot(Map<String, Entry> entries) {
+        try {
+            LegacyFormatParser.readAccounts(snapshotFile.toPath(),
+                (data, numberStart, numberEnd, pinStart, pinEnd, nameStart, nameEnd, balanceCents) -> {
+                    Entry entry = new Entry();
+                    entry.pin = LegacyFormatParser.decode(data, pinStart, pinEnd);
+                    entry.name = LegacyFormatParser.decode(data, nameStart, nameEnd);
+                    entry.balance = Money.ofCents(balanceCents);
+                    entries.put(LegacyFormatParser.decode(data, numberStart, numberEnd), entry);
+                });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void readEntry(ByteBuffer payload, boolean doubleBalance, Map<String, Entry> entries) {
+        String accNum = getString(payload);
+        Entry entry = new Entry();
+        entry.pin = getString(payload);
+        entry.name = getString(payload);
+        entry.balance = doubleBalance ? Money.of(payload.getDouble()) : Money.ofCents(payload.getLong());
+        entries.put(accNum, entry);
+    }
+
+    // Applies every intact record to entries and returns the offset just past the last one
+    private long replayLog(Map<String, Entry> entries) throws IOException {
+        if (!logFile.exists()) {
+            return 0;
+        }
+        byte[] log;
+        try (FileInputStream in = new FileInputStream(logFile)) {
+            log = in.readAllBytes();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(log);
+        CRC32 check = new CRC32();
+        long validLength = 0;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int payloadLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (payloadLength <= 0 || payloadLength > MAX_BATCH_SIZE || payloadLength > buffer.remaining()) {
+                break;
+            }
+            check.reset();
+            check.update(log, buffer.position(), payloadLength);
+            if ((int) check.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.wrap(log, buffer.position(), payloadLength).slice();
+            buffer.position(buffer.position() + payloadLength);
+            byte type = payload.get();
+            boolean doubleBalance = type == RECORD_PUT_DOUBLE || type == RECORD_BATCH_DOUBLE;
+            if (type == RECORD_PUT || type == RECORD_PUT_DOUBLE) {
+                readEntry(payload, doubleBalance, entries);
+            } else if (type == RECORD_BATCH || type == RECORD_BATCH_DOUBLE) {
+                int count = payload.getInt();
+                for (int i = 0; i < count; i++) {
+                    readEntry(payload, doubleBalance, entries);
+                }
+            }
+            validLength = buffer.position();
+        }
+        return validLength;
+    }
+}
@@ -0,0 +1,64 @@
+package main.java;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Live accounts shared by the Swing UI, the admin interface and the web
+// server threads. Creating an account is atomic with respect to other
+// creations of the same number, and iteration never throws
+// ConcurrentModificationException: it sees each account at most once and
+// may or may not see concurrent changes.
+public class AccountRegistry {
+    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+
+    public Account get(String accountNumber) {
+        return accounts.get(accountNumber);
+    }
+
+    public boolean contains(String accountNumber) {
+        return accounts.containsKey(accountNumber);
+    }
+
+    public void put(Account account) {
+        accounts.put(account.getAccountNumber(), account);
+    }
+
+    public void putAll(Map<String, Account> loaded) {
+        accounts.putAll(loaded);
+    }
+
+    public Account remove(String accountNumber) {
+        return accounts.remove(accountNumber);
+    }
+
+    // Registers the account built by factory unless the number is taken.
+    // Returns the new account, or null if the number already existed.
+    public Account createIfAbsent(String accountNumber, Supplier<Account> factory) {
+        Account[] created = new Account[1];
+        accounts.computeIfAbsent(accountNumber, _ -> created[0] = factory.get());
+        return created[0];
+    }
+
+    // Draws numbers from generator until one is free and registers the
+    // account built for it
+    public Account createWithUniqueNumber(Supplier<String> generator, Function<String, Account> factory) {
+        while (true) {
+            String accountNumber = generator.get();
+            Account account = createIfAbsent(accountNumber, () -> factory.apply(accountNumber));
+            if (account != null) {
+                return account;
+            }
+        }
+    }
+
+    public Collection<Account> values() {
+        return accounts.values();
+    }
+
+    public int size() {
+        return accounts.size();
+    }
+}
@@ -0,0 +1,42 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Map;
+
+public interface AccountStore {
+    String STORAGE_PROPERTY = "atm.storage";
+
+    boolean exists();
+
+    Map<String, Account> load();
+
+    void save(Account account);
+
+    // Writes the accounts as one commit, so after a crash either all of them
+    // or none are recovered. Stores that cannot do that save them one by one.
+    default void saveAll(Collection<Account> accounts) {
+        for (Account account : accounts) {
+            save(account);
+        }
+    }
+
+    void close();
+
+    static AccountStore create(String snapshotPath, String logPath) {
+        String mode = System.getProperty(STORAGE_PROPERTY, "ledger");
+        return switch (mode) {
+            case "mapped" -> MappedAccountStore.open("accounts.dat", snapshotPath, logPath);
+            case "ledger" -> AccountLedger.open(snapshotPath, logPath);
+            case "lsm" -> {
+                try {
+                    yield new LsmAccountStore(LsmStore.shared(), snapshotPath, logPath);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot open LSM store", e);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown account storage mode: " + mode);
+        };
+    }
+}
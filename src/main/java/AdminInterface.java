@@ -3,11 +3,14 @@ package main.java;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.HashMap;
-import java.util.List;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+public final class AdminInterface extends JFrame {
+    private static final long serialVersionUID = 1L;
 
-public class AdminInterface extends JFrame {
     // Custom colors for futuristic theme
     private static final Color NEON_CYAN = new Color(0, 255, 255);
     @SuppressWarnings("unused")
@@ -135,19 +138,16 @@ public class AdminInterface extends JFrame {
     }
     private JPanel mainPanel;
     private CardLayout cardLayout;
-    private HashMap<String, Account> accounts;
+    private transient AccountRegistry accounts;
+    private transient TransactionEngine engine;
     private DefaultTableModel accountModel;
     private DefaultTableModel deletedAccountModel;
-    private DeletedAccountManager deletedAccountManager;
+    private transient DeletedAccountManager deletedAccountManager;
     
-    // Generate a unique 8-digit account number
-    private String generateUniqueAccountNumber() {
+    // Generate a candidate 8-digit account number, AccountRegistry retries until one is free
+    private String generateAccountNumber() {
         Random random = new Random();
-        String accountNumber;
-        do {
-            accountNumber = String.format("%08d", random.nextInt(100000000));
-        } while (accounts.containsKey(accountNumber));
-        return accountNumber;
+        return String.format("%08d", random.nextInt(100000000));
     }
     
     // Generate a random 4-digit PIN
@@ -156,9 +156,10 @@ public class AdminInterface extends JFrame {
         return String.format("%04d", random.nextInt(10000));
     }
 
-    public AdminInterface(HashMap<String, Account> accounts) {
+    public AdminInterface(AccountRegistry accounts, TransactionEngine engine) {
         this.accounts = accounts;
-        this.deletedAccountManager = new DeletedAccountManager();
+        this.engine = engine;
+        this.deletedAccountManager = DeletedAccountManager.getInstance();
         
         setTitle("ATM Admin Interface");
         setSize(1000, 600);
@@ -403,13 +404,14 @@ public class AdminInterface extends JFrame {
                 String accountNumber = (String) deletedAccountsTable.getValueAt(selectedRow, 0);
                 deletedAccountManager.restoreAccount(accountNumber).ifPresent(deletedAccount -> {
                     // Generate new account number and PIN
-                    String newAccountNumber = generateUniqueAccountNumber();
                     String newPin = generateRandomPin();
-                    Account restoredAccount = new Account(
-                        newAccountNumber,
-                        newPin,
-                        deletedAccount.getFinalBalance(),
-                        deletedAccount.getAccountHolder());
+                    Account restoredAccount = accounts.createWithUniqueNumber(this::generateAccountNumber,
+                        number -> new Account(
+                            number,
+                            newPin,
+                            deletedAccount.getFinalBalance(),
+                            deletedAccount.getAccountHolder()));
+                    String newAccountNumber = restoredAccount.getAccountNumber();
                     // Add a transaction record for the restored balance
                     restoredAccount.addTransaction("ACCOUNT_RESTORED", deletedAccount.getFinalBalance(), 
                         deletedAccount.getFinalBalance(), 
@@ -421,7 +423,6 @@ public class AdminInterface extends JFrame {
                             newAccountNumber, newPin),
                         "Account Restored",
                         JOptionPane.INFORMATION_MESSAGE);
-                    accounts.put(newAccountNumber, restoredAccount);
                     refreshDeletedAccountsTable();
                     JOptionPane.showMessageDialog(this,
                         "Account restored successfully!",
@@ -491,7 +492,7 @@ public class AdminInterface extends JFrame {
             deletedAccountModel.addRow(new Object[]{
                 account.getAccountNumber(),
                 account.getAccountHolder(),
-                String.format("₱%.2f", account.getFinalBalance()),
+                "₱" + account.getFinalBalance(),
                 account.getDeletionTime().toString(),
                 account.getDeletionReason()
             });
@@ -750,7 +751,7 @@ public class AdminInterface extends JFrame {
             accountModel.addRow(new Object[]{
                 account.getAccountNumber(),
                 account.getAccountHolder(),
-                String.format("₱%.2f", account.getBalance()),
+                "₱" + account.getBalance(),
                 account.getPin()
             });
         }
@@ -759,14 +760,27 @@ public class AdminInterface extends JFrame {
 
     private void displayTransactionHistory(Account account, DefaultTableModel transactionModel) {
         transactionModel.setRowCount(0);
-        List<Transaction> transactions = account.getTransactionHistory();
-        for (Transaction transaction : transactions) {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        if (account.hasEarlierTransactions()) {
+            // Older entries only survive in the transaction log, which does not record balances
+            for (TransactionHistory.Transaction transaction : account.getEarlierTransactions()) {
+                transactionModel.addRow(new Object[]{
+                    sdf.format(new Date(transaction.timestamp)),
+                    transaction.type,
+                    "₱" + transaction.amount,
+                    "-",
+                    transaction.description
+                });
+            }
+        }
+        TransactionRing.Cursor cursor = account.getTransactionCursor();
+        while (cursor.next()) {
             transactionModel.addRow(new Object[]{
-                transaction.getFormattedTimestamp(),
-                transaction.getType(),
-                String.format("₱%.2f", transaction.getAmount()),
-                String.format("₱%.2f", transaction.getBalanceAfter()),
-                transaction.getDescription()
+                sdf.format(new Date(cursor.getTimestamp())),
+                cursor.getType(),
+                "₱" + Money.ofCents(cursor.getAmountCents()),
+                "₱" + Money.ofCents(cursor.getBalanceAfterCents()),
+                cursor.getDescription()
             });
         }
     }
@@ -811,32 +825,34 @@ public class AdminInterface extends JFrame {
             try {
                 createButton.setEnabled(false);
                 String accNum = accNumField.getText();
-                if (accounts.containsKey(accNum)) {
+                if (accounts.contains(accNum)) {
                     JOptionPane.showMessageDialog(dialog, "Account number already exists!");
                     return;
                 }
 
                 String name = nameField.getText();
                 String pin = new String(pinField.getPassword());
-                double initialDeposit = Double.parseDouble(initialDepositField.getText());
+                Money initialDeposit = Money.parse(initialDepositField.getText().trim());
 
                 if (name.isEmpty() || accNum.isEmpty() || pin.isEmpty()) {
                     JOptionPane.showMessageDialog(dialog, "All fields are required!");
                     return;
                 }
 
-                if (initialDeposit < 500) {
+                if (initialDeposit.compareTo(Money.ofCents(500_00)) < 0) {
                     JOptionPane.showMessageDialog(dialog, "Initial deposit must be at least ₱500!");
                     return;
                 }
 
-                Account newAccount = new Account(accNum, pin, initialDeposit, name);
-                accounts.put(accNum, newAccount);
+                if (accounts.createIfAbsent(accNum, () -> new Account(accNum, pin, initialDeposit, name)) == null) {
+                    JOptionPane.showMessageDialog(dialog, "Account number already exists!");
+                    return;
+                }
                 refreshData(accountModel, transactionModel);
                 dialog.dispose();
                 JOptionPane.showMessageDialog(this, "Account created successfully!");
                 createButton.setEnabled(true);
-            } catch (NumberFormatException ex) {
+            } catch (NumberFormatException | ArithmeticException ex) {
                 JOptionPane.showMessageDialog(dialog, "Please enter a valid amount for initial deposit!");
             }
         });
@@ -883,13 +899,21 @@ public class AdminInterface extends JFrame {
                 return;
             }
 
-            // Update account details
-            account.setPin(pin);
-            account.setAccountHolder(name);
-            refreshData(accountModel, transactionModel);
-            dialog.dispose();
-            JOptionPane.showMessageDialog(this, "Account updated successfully!");
-            updateButton.setEnabled(true);
+            // Update account details on the account's engine shard, which
+            // saves them; the dialog waits off the event thread
+            updateButton.setEnabled(false);
+            CompletableFuture.allOf(engine.changePin(account, pin), engine.changeAccountHolder(account, name))
+                .whenComplete((ignored, failure) -> SwingUtilities.invokeLater(() -> {
+                    updateButton.setEnabled(true);
+                    if (failure != null) {
+                        JOptionPane.showMessageDialog(dialog,
+                            "Update failed: " + TransactionEngine.cause(failure).getMessage());
+                        return;
+                    }
+                    refreshData(accountModel, transactionModel);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Account updated successfully!");
+                }));
         });
 
         gbc.gridx = 0; gbc.gridy = 2; gbc.gridwidth = 2;
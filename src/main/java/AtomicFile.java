@@ -0,0 +1,34 @@
+package main.java;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+// Replaces a file by writing a temp file next to it, forcing it to disk and
+// renaming it over the target, so readers never see a half-written file.
+public class AtomicFile {
+    public interface Content {
+        void writeTo(PrintWriter out) throws IOException;
+    }
+
+    public static void write(File target, Content content) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8)));
+            content.writeTo(out);
+            out.flush();
+            if (out.checkError()) {
+                throw new IOException("Error writing " + temp);
+            }
+            fos.getFD().sync();
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+    }
+}
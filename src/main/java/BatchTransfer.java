@@ -0,0 +1,88 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// A set of credits paid out of one source account, e.g. a payroll run. Built
+// by the caller with add(), handed to TransactionEngine.transferBatch, and
+// returned from it with every item's status filled in.
+public class BatchTransfer {
+    public enum Status { PENDING, COMPLETED, REJECTED, FAILED }
+
+    private final List<Item> items = new ArrayList<>();
+
+    public static class Item {
+        private final String recipientAccountNumber;
+        private final Money amount;
+        private volatile Status status = Status.PENDING;
+        private volatile String message;
+        // Resolved by the engine when the batch is validated
+        Account recipient;
+
+        Item(String recipientAccountNumber, Money amount) {
+            this.recipientAccountNumber = recipientAccountNumber;
+            this.amount = amount;
+        }
+
+        public String getRecipientAccountNumber() {
+            return recipientAccountNumber;
+        }
+
+        public Money getAmount() {
+            return amount;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        void complete() {
+            status = Status.COMPLETED;
+        }
+
+        void reject(String message) {
+            status = Status.REJECTED;
+            this.message = message;
+        }
+
+        void fail(String message) {
+            status = Status.FAILED;
+            this.message = message;
+        }
+    }
+
+    public BatchTransfer add(String recipientAccountNumber, Money amount) {
+        items.add(new Item(recipientAccountNumber, amount));
+        return this;
+    }
+
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    public int count(Status status) {
+        int count = 0;
+        for (Item item : items) {
+            if (item.status == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Sum of the items that reached their recipients
+    public Money getTransferredTotal() {
+        Money total = Money.ZERO;
+        for (Item item : items) {
+            if (item.status == Status.COMPLETED) {
+                total = total.plus(item.amount);
+            }
+        }
+        return total;
+    }
+}
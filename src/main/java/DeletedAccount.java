@@ -5,11 +5,11 @@ import java.time.LocalDateTime;
 public class DeletedAccount {
     private String accountNumber;
     private String accountHolder;
-    private double finalBalance;
+    private Money finalBalance;
     private LocalDateTime deletionTime;
     private String deletionReason;
 
-    public DeletedAccount(String accountNumber, String accountHolder, double finalBalance, String deletionReason) {
+    public DeletedAccount(String accountNumber, String accountHolder, Money finalBalance, String deletionReason) {
         this.accountNumber = accountNumber;
         this.accountHolder = accountHolder;
         this.finalBalance = finalBalance;
@@ -25,7 +25,7 @@ public class DeletedAccount {
         return accountHolder;
     }
 
-    public double getFinalBalance() {
+    public Money getFinalBalance() {
         return finalBalance;
     }
 
@@ -39,7 +39,7 @@ public class DeletedAccount {
 
     @Override
     public String toString() {
-        return String.format("%s,%s,%.2f,%s,%s", 
+        return String.format("%s,%s,%s,%s,%s", 
             accountNumber, 
             accountHolder, 
             finalBalance, 
@@ -56,7 +56,7 @@ public class DeletedAccount {
         DeletedAccount account = new DeletedAccount(
             parts[0], // accountNumber
             parts[1], // accountHolder
-            Double.parseDouble(parts[2]), // finalBalance
+            Money.parse(parts[2]), // finalBalance
             parts[4]  // deletionReason
         );
         account.deletionTime = LocalDateTime.parse(parts[3]);
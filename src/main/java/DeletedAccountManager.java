@@ -1,88 +1,51 @@
 package main.java;
 
-import java.io.*;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+// One instance per process, shared by the login screen and the admin
+// interface. The store holds the deleted accounts, indexed by account number.
 public class DeletedAccountManager {
     private static final String DELETED_ACCOUNTS_FILE = "deleted_accounts.txt";
-    private List<DeletedAccount> deletedAccounts;
+    private static final String DELETED_ACCOUNTS_LOG = "deleted_accounts.log";
+    private static DeletedAccountManager instance;
 
-    public DeletedAccountManager() {
-        deletedAccounts = new ArrayList<>();
-        loadDeletedAccounts();
+    private final DeletedAccountStore store;
+
+    private DeletedAccountManager() {
+        store = DeletedAccountStore.create(DELETED_ACCOUNTS_FILE, DELETED_ACCOUNTS_LOG);
+    }
+
+    public static synchronized DeletedAccountManager getInstance() {
+        if (instance == null) {
+            instance = new DeletedAccountManager();
+        }
+        return instance;
     }
 
-    public void addDeletedAccount(Account account, String reason) {
+    public synchronized void addDeletedAccount(Account account, String reason) {
         DeletedAccount deletedAccount = new DeletedAccount(
             account.getAccountNumber(),
             account.getAccountHolder(),
             account.getBalance(),
             reason
         );
-        deletedAccounts.add(deletedAccount);
-        saveDeletedAccounts();
+        store.add(deletedAccount);
     }
 
-    public List<DeletedAccount> getDeletedAccounts() {
-        return new ArrayList<>(deletedAccounts);
+    public synchronized List<DeletedAccount> getDeletedAccounts() {
+        return store.list();
     }
 
-    public Optional<DeletedAccount> restoreAccount(String accountNumber) {
-        Optional<DeletedAccount> accountToRestore = deletedAccounts.stream()
-            .filter(acc -> acc.getAccountNumber().equals(accountNumber))
-            .findFirst();
-        
-        accountToRestore.ifPresent(account -> {
-            deletedAccounts.remove(account);
-            saveDeletedAccounts();
-        });
-        
-        return accountToRestore;
+    public synchronized Optional<DeletedAccount> findDeletedAccount(String accountNumber) {
+        return Optional.ofNullable(store.find(accountNumber));
     }
 
-    public boolean permanentlyDeleteAccount(String accountNumber) {
-        Optional<DeletedAccount> accountToDelete = deletedAccounts.stream()
-            .filter(acc -> acc.getAccountNumber().equals(accountNumber))
-            .findFirst();
-        
-        if (accountToDelete.isPresent()) {
-            deletedAccounts.remove(accountToDelete.get());
-            saveDeletedAccounts();
-            return true;
-        }
-        return false;
+    public synchronized Optional<DeletedAccount> restoreAccount(String accountNumber) {
+        return Optional.ofNullable(store.restore(accountNumber));
     }
 
-    private void loadDeletedAccounts() {
-        File file = new File(DELETED_ACCOUNTS_FILE);
-        if (!file.exists()) {
-            return;
-        }
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                try {
-                    DeletedAccount account = DeletedAccount.fromString(line);
-                    deletedAccounts.add(account);
-                } catch (Exception e) {
-                    System.err.println("Error parsing deleted account: " + e.getMessage());
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error loading deleted accounts: " + e.getMessage());
-        }
-    }
-
-    private void saveDeletedAccounts() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(DELETED_ACCOUNTS_FILE))) {
-            for (DeletedAccount account : deletedAccounts) {
-                writer.println(account.toString());
-            }
-        } catch (IOException e) {
-            System.err.println("Error saving deleted accounts: " + e.getMessage());
-        }
+    public synchronized boolean permanentlyDeleteAccount(String accountNumber) {
+        return store.purge(accountNumber);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+// Holds the only copy of the deleted accounts; DeletedAccountManager reads
+// through it rather than keeping a map of its own
+public interface DeletedAccountStore {
+    // Deleted accounts in deletion order
+    List<DeletedAccount> list();
+
+    // The deleted account with this number, or null
+    DeletedAccount find(String accountNumber);
+
+    void add(DeletedAccount account);
+
+    // The account was restored by an admin. Returns it, or null if it was
+    // not deleted.
+    DeletedAccount restore(String accountNumber);
+
+    // The account was permanently deleted by an admin. Returns false if it
+    // was not deleted.
+    boolean purge(String accountNumber);
+
+    static DeletedAccountStore create(String path, String logPath) {
+        if ("lsm".equals(System.getProperty(AccountStore.STORAGE_PROPERTY))) {
+            try {
+                return new LsmDeletedAccountStore(LsmStore.shared());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open LSM store", e);
+            }
+        }
+        return new FileDeletedAccountStore(path, logPath);
+    }
+}
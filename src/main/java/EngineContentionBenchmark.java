@@ -0,0 +1,139 @@
+package main.java;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Contention benchmark for TransactionEngine and the account balances and
+// histories it updates. Each client thread submits deposits, withdrawals and
+// transfers between random accounts and waits for every result, as the ATM
+// screens and web handlers do. The run is repeated with 1, 2, 4, ... client
+// threads up to twice the core count, printing throughput and latency for
+// each. With few accounts the clients pile onto the same shards and
+// accounts; with many the work spreads over every shard. At the end the
+// summed balances are checked against the money moved in and out.
+//
+// Transactions are logged as in the application, so run it from a scratch
+// directory. Velocity limits are off unless set with -Datm.limits.*.
+//   java -cp bin main.java.EngineContentionBenchmark [accounts] [secondsPerRun]
+public class EngineContentionBenchmark {
+    private static final long START_CENTS = 1_000_000_000L;
+    private static final Money UNIT = Money.ofCents(100);
+    // Latency histogram in microseconds; the last bucket collects the rest
+    private static final int MAX_MICROS = 100_000;
+
+    private record Result(long operations, long failures, long netCents, double seconds, long[] histogram) {
+        long percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * operations);
+            long seen = 0;
+            for (int micros = 0; micros < histogram.length; micros++) {
+                seen += histogram[micros];
+                if (seen >= rank) {
+                    return micros;
+                }
+            }
+            return MAX_MICROS;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        if (accountCount < 2) {
+            System.err.println("Usage: EngineContentionBenchmark [accounts >= 2] [secondsPerRun]");
+            System.exit(1);
+        }
+        if (System.getProperty("atm.limits.dailyCount") == null) {
+            System.setProperty("atm.limits.dailyCount", "0");
+        }
+
+        Account[] accounts = new Account[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = new Account(String.format("%06d", i), "1234", Money.ofCents(START_CENTS), "Benchmark " + i);
+        }
+        TransactionEngine engine = new TransactionEngine(new MemoryAccountStore());
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d accounts, %d cores, %d s per run%n", accountCount, cores, seconds);
+
+        long netCents = run(engine, accounts, cores, 1).netCents(); // warm-up
+        System.out.println("threads      ops/s    p50 us    p99 us  failed");
+        for (int threads = 1; threads <= 2 * cores; threads *= 2) {
+            Result result = run(engine, accounts, threads, seconds);
+            netCents += result.netCents();
+            System.out.printf("%7d %10.0f %9d %9d %7d%n", threads, result.operations() / result.seconds(),
+                result.percentile(0.50), result.percentile(0.99), result.failures());
+        }
+        engine.close();
+
+        long expected = START_CENTS * accountCount + netCents;
+        long actual = 0;
+        for (Account account : accounts) {
+            actual += account.getBalance().getCents();
+        }
+        if (actual != expected) {
+            System.err.printf("Balances off by %d centavos%n", actual - expected);
+            System.exit(1);
+        }
+        System.out.println("Balances conserved");
+        System.exit(0);
+    }
+
+    private static Result run(TransactionEngine engine, Account[] accounts, int threadCount, int seconds)
+            throws InterruptedException {
+        long[][] histograms = new long[threadCount][MAX_MICROS + 1];
+        long[] operations = new long[threadCount];
+        long[] failures = new long[threadCount];
+        long[] netCents = new long[threadCount];
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] threads = new Thread[threadCount];
+        long started = System.nanoTime();
+        for (int t = 0; t < threadCount; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long[] histogram = histograms[id];
+                while (System.nanoTime() < deadline) {
+                    Account account = accounts[random.nextInt(accounts.length)];
+                    int operation = random.nextInt(10);
+                    long start = System.nanoTime();
+                    try {
+                        if (operation < 4) {
+                            TransactionEngine.await(engine.deposit(account, UNIT));
+                            netCents[id] += UNIT.getCents();
+                        } else if (operation < 7) {
+                            TransactionEngine.await(engine.withdraw(account, UNIT));
+                            netCents[id] -= UNIT.getCents();
+                        } else {
+                            Account recipient;
+                            do {
+                                recipient = accounts[random.nextInt(accounts.length)];
+                            } while (recipient == account);
+                            TransactionEngine.await(engine.transfer(account, UNIT, recipient, "Benchmark"));
+                        }
+                    } catch (RuntimeException e) {
+                        failures[id]++;
+                    }
+                    histogram[(int) Math.min((System.nanoTime() - start) / 1000, MAX_MICROS)]++;
+                    operations[id]++;
+                }
+            }, "benchmark-client-" + t);
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - started) / 1e9;
+
+        long[] histogram = new long[MAX_MICROS + 1];
+        long totalOperations = 0;
+        long totalFailures = 0;
+        long totalNet = 0;
+        for (int t = 0; t < threadCount; t++) {
+            for (int micros = 0; micros <= MAX_MICROS; micros++) {
+                histogram[micros] += histograms[t][micros];
+            }
+            totalOperations += operations[t];
+            totalFailures += failures[t];
+            totalNet += netCents[t];
+        }
+        return new Result(totalOperations, totalFailures, totalNet, elapsed, histogram);
+    }
+}
@@ -0,0 +1,155 @@
+package main.java;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// deleted_accounts.txt is the compacted base image. Every change after that
+// is appended to deleted_accounts.log as one line:
+//   A,<deleted account line>   account deleted
+//   R,<accountNumber>          account restored
+//   P,<accountNumber>          account permanently deleted
+// Restore and purge lines are tombstones for an earlier A line. Once the log
+// holds atm.deletedAccounts.compactThreshold lines, and on every load, the
+// live entries are rewritten into deleted_accounts.txt and the log emptied.
+public class FileDeletedAccountStore implements DeletedAccountStore {
+    private static final int DEFAULT_COMPACT_THRESHOLD = 64;
+
+    private final File file;
+    private final File logFile;
+    private final int compactThreshold;
+    private final LinkedHashMap<String, DeletedAccount> state = new LinkedHashMap<>();
+    private int logRecords;
+
+    public FileDeletedAccountStore(String path, String logPath) {
+        this.file = new File(path);
+        this.logFile = new File(logPath);
+        this.compactThreshold = Integer.getInteger("atm.deletedAccounts.compactThreshold", DEFAULT_COMPACT_THRESHOLD);
+        readBase();
+        logRecords = replayLog();
+        if (logRecords > 0) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized List<DeletedAccount> list() {
+        return new ArrayList<>(state.values());
+    }
+
+    @Override
+    public synchronized DeletedAccount find(String accountNumber) {
+        return state.get(accountNumber);
+    }
+
+    @Override
+    public synchronized void add(DeletedAccount account) {
+        state.remove(account.getAccountNumber());
+        state.put(account.getAccountNumber(), account);
+        append("A," + account.toString());
+    }
+
+    @Override
+    public synchronized DeletedAccount restore(String accountNumber) {
+        DeletedAccount account = state.remove(accountNumber);
+        if (account != null) {
+            append("R," + accountNumber);
+        }
+        return account;
+    }
+
+    @Override
+    public synchronized boolean purge(String accountNumber) {
+        if (state.remove(accountNumber) == null) {
+            return false;
+        }
+        append("P," + accountNumber);
+        return true;
+    }
+
+    private void append(String record) {
+        try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+            out.write((record + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            System.err.println("Error saving deleted accounts: " + e.getMessage());
+            return;
+        }
+        if (++logRecords >= compactThreshold) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        try {
+            AtomicFile.write(file, writer -> {
+                for (DeletedAccount account : state.values()) {
+                    writer.println(account.toString());
+                }
+            });
+            // Replaying the log again over the new base is harmless, so a
+            // crash before this truncate loses nothing
+            try (FileOutputStream out = new FileOutputStream(logFile)) {
+                out.getFD().sync();
+            }
+            logRecords = 0;
+        } catch (IOException e) {
+            System.err.println("Error compacting deleted accounts: " + e.getMessage());
+        }
+    }
+
+    private void readBase() {
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    DeletedAccount account = DeletedAccount.fromString(line);
+                    state.put(account.getAccountNumber(), account);
+                } catch (Exception e) {
+                    System.err.println("Error parsing deleted account: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading deleted accounts: " + e.getMessage());
+        }
+    }
+
+    private int replayLog() {
+        if (!logFile.exists()) {
+            return 0;
+        }
+        int records = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                records++;
+                if (line.length() < 2 || line.charAt(1) != ',') {
+                    // Torn tail from a crash mid-append
+                    continue;
+                }
+                String value = line.substring(2);
+                try {
+                    switch (line.charAt(0)) {
+                        case 'A' -> {
+                            DeletedAccount account = DeletedAccount.fromString(value);
+                            state.remove(account.getAccountNumber());
+                            state.put(account.getAccountNumber(), account);
+                        }
+                        case 'R', 'P' -> state.remove(value);
+                        default -> System.err.println("Unknown deleted account log record: " + line);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error parsing deleted account log record: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading deleted account log: " + e.getMessage());
+        }
+        return records;
+    }
+}
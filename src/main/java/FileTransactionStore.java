@@ -0,0 +1,64 @@
+package main.java;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// transactions.txt for the current day, read through its offset index, plus
+// the sealed binary segments it has been rolled into
+public class FileTransactionStore implements TransactionStore {
+    private static final int RECORD_BUFFER_SIZE = 512;
+
+    private final String logPath;
+    private final TransactionAppender appender;
+
+    public FileTransactionStore(String logPath, String indexPath, String segmentDirectory) throws IOException {
+        this.logPath = logPath;
+        this.appender = TransactionAppender.open(logPath, indexPath, segmentDirectory);
+    }
+
+    @Override
+    public CompletableFuture<Void> append(String accountNumber, String type, Money amount, long timestamp, String description) {
+        return appender.append(accountNumber, type, amount, timestamp, description);
+    }
+
+    @Override
+    public List<TransactionHistory.Transaction> read(String accountNumber, long from, long to) throws IOException {
+        List<TransactionHistory.Transaction> transactions = new ArrayList<>();
+        // Make sure records still queued for this account are visible
+        appender.flush().join();
+        synchronized (appender) {
+            appender.getCatalog().scan(accountNumber, from, to,
+                (account, type, amountCents, timestamp, description) -> transactions.add(new TransactionHistory.Transaction(
+                    account, type, Money.ofCents(amountCents), timestamp, description == null ? "" : description)));
+            long[] offsets = appender.getIndex().getOffsets(accountNumber);
+            if (offsets.length > 0) {
+                readRecords(accountNumber, offsets, from, to, transactions);
+            }
+        }
+        return transactions;
+    }
+
+    private void readRecords(String accountNumber, long[] offsets, long from, long to,
+                             List<TransactionHistory.Transaction> transactions) throws IOException {
+        TransactionSegment.LegacyRecordCollector collector = new TransactionSegment.LegacyRecordCollector(
+            (account, type, amountCents, timestamp, description) -> {
+                if (account.equals(accountNumber) && timestamp >= from && timestamp <= to) {
+                    transactions.add(new TransactionHistory.Transaction(
+                        account, type, Money.ofCents(amountCents), timestamp, description == null ? "" : description));
+                }
+            });
+        try (FileChannel channel = FileChannel.open(Paths.get(logPath), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_BUFFER_SIZE);
+            for (long offset : offsets) {
+                buffer = LegacyFormatParser.readTransactionAt(channel, offset, buffer, collector);
+                collector.finish();
+            }
+        }
+    }
+}
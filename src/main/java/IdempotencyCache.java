@@ -0,0 +1,87 @@
+package main.java;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+// Remembers the outcome of recent money-moving requests by their
+// client-supplied request ID, so a retried or double-submitted request gets
+// the first attempt's future back instead of being applied again. A retry
+// that arrives while the first attempt is still running waits on the same
+// future. Failed attempts are forgotten once they fail, since a failed
+// operation changed nothing and may be retried.
+//
+// Entries expire after atm.idempotency.ttlSeconds (default 600). At most
+// atm.idempotency.maxEntries (default 10000) are kept; past that the oldest
+// are dropped first.
+public class IdempotencyCache {
+    private static final long DEFAULT_TTL_SECONDS = 600;
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Insertion order, for expiry and eviction
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+
+    private record Entry(String requestId, String fingerprint, CompletableFuture<Void> result, long createdAt) {
+    }
+
+    public IdempotencyCache() {
+        this.ttlMillis = Long.getLong("atm.idempotency.ttlSeconds", DEFAULT_TTL_SECONDS) * 1000;
+        this.maxEntries = Integer.getInteger("atm.idempotency.maxEntries", DEFAULT_MAX_ENTRIES);
+    }
+
+    // Runs operation unless requestId has been seen recently. fingerprint
+    // describes the operation, reusing a request ID for a different one is
+    // rejected.
+    public CompletableFuture<Void> execute(String requestId, String fingerprint, Supplier<CompletableFuture<Void>> operation) {
+        long now = System.currentTimeMillis();
+        evict(now);
+        Entry fresh = new Entry(requestId, fingerprint, new CompletableFuture<>(), now);
+        while (true) {
+            Entry existing = entries.putIfAbsent(requestId, fresh);
+            if (existing == null) {
+                break;
+            }
+            if (now - existing.createdAt < ttlMillis) {
+                if (!existing.fingerprint.equals(fingerprint)) {
+                    return CompletableFuture.failedFuture(
+                        new IllegalArgumentException("Request ID already used for a different operation"));
+                }
+                return existing.result;
+            }
+            entries.remove(requestId, existing);
+        }
+        order.add(fresh);
+        CompletableFuture<Void> result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, failure) -> {
+            if (failure != null) {
+                entries.remove(requestId, fresh);
+                fresh.result.completeExceptionally(failure);
+            } else {
+                fresh.result.complete(value);
+            }
+        });
+        return fresh.result;
+    }
+
+    private void evict(long now) {
+        Entry oldest;
+        while ((oldest = order.peek()) != null
+                && (now - oldest.createdAt >= ttlMillis || entries.size() > maxEntries)) {
+            Entry expired = order.poll();
+            if (expired != null) {
+                entries.remove(expired.requestId, expired);
+            }
+        }
+    }
+}
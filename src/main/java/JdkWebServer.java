@@ -0,0 +1,35 @@
+package main.java;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+
+// WebServer backed by the JDK's com.sun.net.httpserver implementation
+public class JdkWebServer implements WebServer {
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public JdkWebServer(int port, int backlog, ExecutorService executor) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), backlog);
+        this.executor = executor;
+        server.setExecutor(executor);
+    }
+
+    @Override
+    public void createContext(String path, HttpHandler handler) {
+        server.createContext(path, handler);
+    }
+
+    @Override
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,337 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// Pull-style JSON tokenizer. Bytes are read from the stream into a reused
+// buffer and string or number tokens are decoded into a reused char buffer,
+// so walking a document allocates nothing; callers compare tokens in place
+// with textEquals and only call text() for the values they keep. A reader is
+// meant to be reset and reused for the next request. Reading more than
+// maxBytes fails with BodyTooLargeException.
+public class JsonReader {
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END
+    }
+
+    public static class MalformedJsonException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public MalformedJsonException(String message) {
+            super(message);
+        }
+    }
+
+    public static class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public BodyTooLargeException(int maxBytes) {
+            super("Request body larger than " + maxBytes + " bytes");
+        }
+    }
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final int MAX_DEPTH = 32;
+    // Container states
+    private static final byte OBJECT_START = 0;
+    private static final byte OBJECT_VALUE = 1;
+    private static final byte OBJECT_NEXT = 2;
+    private static final byte ARRAY_START = 3;
+    private static final byte ARRAY_NEXT = 4;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] stack = new byte[MAX_DEPTH];
+    private char[] text = new char[256];
+    private int textLength;
+    private InputStream in;
+    private int maxBytes;
+    private int position;
+    private int limit;
+    private int consumed;
+    private int depth;
+    private boolean topLevelRead;
+
+    public JsonReader reset(InputStream in, int maxBytes) {
+        this.in = in;
+        this.maxBytes = maxBytes;
+        position = 0;
+        limit = 0;
+        consumed = 0;
+        depth = 0;
+        textLength = 0;
+        topLevelRead = false;
+        return this;
+    }
+
+    public Token next() throws IOException {
+        int c = skipWhitespace();
+        if (depth == 0) {
+            if (topLevelRead) {
+                return Token.END;
+            }
+            topLevelRead = true;
+            return value(c);
+        }
+        switch (stack[depth - 1]) {
+            case OBJECT_START -> {
+                if (c == '}') {
+                    depth--;
+                    return Token.END_OBJECT;
+                }
+                return name(c);
+            }
+            case OBJECT_VALUE -> {
+                stack[depth - 1] = OBJECT_NEXT;
+                return value(c);
+            }
+            case OBJECT_NEXT -> {
+                if (c == '}') {
+                    depth--;
+                    return Token.END_OBJECT;
+                }
+                expect(c, ',');
+                return name(skipWhitespace());
+            }
+            case ARRAY_START -> {
+                if (c == ']') {
+                    depth--;
+                    return Token.END_ARRAY;
+                }
+                stack[depth - 1] = ARRAY_NEXT;
+                return value(c);
+            }
+            default -> {
+                if (c == ']') {
+                    depth--;
+                    return Token.END_ARRAY;
+                }
+                expect(c, ',');
+                return value(skipWhitespace());
+            }
+        }
+    }
+
+    // Skips the value that follows, including everything nested in it. Call
+    // after NAME, or in place of next() inside an array.
+    public void skipValue() throws IOException {
+        Token token = next();
+        if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+            skipContainer();
+        } else if (token == Token.END) {
+            throw new MalformedJsonException("Unexpected end of JSON");
+        }
+    }
+
+    // Skips the rest of the object or array whose BEGIN token was just read
+    public void skipContainer() throws IOException {
+        int nested = 1;
+        do {
+            Token token = next();
+            if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+                nested++;
+            } else if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+                nested--;
+            } else if (token == Token.END) {
+                throw new MalformedJsonException("Unexpected end of JSON");
+            }
+        } while (nested > 0);
+    }
+
+    // Text of the last NAME, STRING or NUMBER token
+    public boolean textEquals(String value) {
+        if (value.length() != textLength) {
+            return false;
+        }
+        for (int i = 0; i < textLength; i++) {
+            if (text[i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String text() {
+        return new String(text, 0, textLength);
+    }
+
+    private Token name(int c) throws IOException {
+        expect(c, '"');
+        readString();
+        expect(skipWhitespace(), ':');
+        stack[depth - 1] = OBJECT_VALUE;
+        return Token.NAME;
+    }
+
+    private Token value(int c) throws IOException {
+        switch (c) {
+            case '{' -> {
+                push(OBJECT_START);
+                return Token.BEGIN_OBJECT;
+            }
+            case '[' -> {
+                push(ARRAY_START);
+                return Token.BEGIN_ARRAY;
+            }
+            case '"' -> {
+                readString();
+                return Token.STRING;
+            }
+            case 't' -> {
+                literal("rue");
+                return Token.TRUE;
+            }
+            case 'f' -> {
+                literal("alse");
+                return Token.FALSE;
+            }
+            case 'n' -> {
+                literal("ull");
+                return Token.NULL;
+            }
+            default -> {
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber(c);
+                    return Token.NUMBER;
+                }
+                throw new MalformedJsonException(c < 0 ? "Unexpected end of JSON" : "Unexpected character '" + (char) c + "'");
+            }
+        }
+    }
+
+    private void push(byte state) throws MalformedJsonException {
+        if (depth == MAX_DEPTH) {
+            throw new MalformedJsonException("JSON nested too deeply");
+        }
+        stack[depth++] = state;
+    }
+
+    private void readString() throws IOException {
+        textLength = 0;
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c < 0) {
+                throw new MalformedJsonException("Unterminated string");
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case '"', '\\', '/' -> append((char) c);
+                    case 'b' -> append('\b');
+                    case 'f' -> append('\f');
+                    case 'n' -> append('\n');
+                    case 'r' -> append('\r');
+                    case 't' -> append('\t');
+                    case 'u' -> append((char) (hex(read()) << 12 | hex(read()) << 8 | hex(read()) << 4 | hex(read())));
+                    default -> throw new MalformedJsonException("Invalid escape in string");
+                }
+            } else if (c < 0x80) {
+                append((char) c);
+            } else if (c >= 0xC0 && c < 0xE0) {
+                append((char) ((c & 0x1F) << 6 | continuation()));
+            } else if (c >= 0xE0 && c < 0xF0) {
+                append((char) ((c & 0x0F) << 12 | continuation() << 6 | continuation()));
+            } else if (c >= 0xF0 && c < 0xF8) {
+                int codePoint = (c & 0x07) << 18 | continuation() << 12 | continuation() << 6 | continuation();
+                append(Character.highSurrogate(codePoint));
+                append(Character.lowSurrogate(codePoint));
+            } else {
+                throw new MalformedJsonException("Invalid UTF-8 in string");
+            }
+        }
+    }
+
+    private void readNumber(int c) throws IOException {
+        textLength = 0;
+        append((char) c);
+        while (true) {
+            c = peek();
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                append((char) read());
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void literal(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw new MalformedJsonException("Invalid literal");
+            }
+        }
+    }
+
+    private int continuation() throws IOException {
+        int c = read();
+        if ((c & 0xC0) != 0x80) {
+            throw new MalformedJsonException("Invalid UTF-8 in string");
+        }
+        return c & 0x3F;
+    }
+
+    private static int hex(int c) throws MalformedJsonException {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        throw new MalformedJsonException("Invalid unicode escape");
+    }
+
+    private void append(char c) {
+        if (textLength == text.length) {
+            text = Arrays.copyOf(text, text.length * 2);
+        }
+        text[textLength++] = c;
+    }
+
+    private static void expect(int c, char expected) throws MalformedJsonException {
+        if (c != expected) {
+            throw new MalformedJsonException("Expected '" + expected + "'");
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        consumed += read;
+        if (consumed > maxBytes) {
+            throw new BodyTooLargeException(maxBytes);
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,291 @@
+package main.java;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Streaming parser for the comma separated transactions.txt and accounts.txt
+// formats. Files are read through one reused buffer and fields are handed to
+// callbacks as byte ranges plus primitive values, so no String or array is
+// created per line unless the caller asks for one.
+//
+// transactions.txt rows have four or five fields, the description may contain
+// commas and may continue on following lines:
+//   090304,Withdrawal,4000.0,1743260692994
+//   090304,CARD_EJECTED,0.00,1744117297615,Paul Allen P. Diaz
+// accounts.txt rows are accountNumber,pin,name,balance.
+public class LegacyFormatParser {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_TIMESTAMP_DIGITS = 18;
+    private static final int MAX_AMOUNT_DIGITS = 16;
+    static final long INVALID_AMOUNT = Long.MIN_VALUE;
+    // Only tells whether a line starts a record
+    private static final TransactionVisitor RECORD_START =
+        (data, offset, as, ae, ts, te, amountCents, timestamp, ds, de) -> { };
+
+    public interface TransactionVisitor {
+        // descriptionStart is -1 for four field rows
+        void record(byte[] data, long offset, int accountStart, int accountEnd, int typeStart, int typeEnd,
+                    long amountCents, long timestamp, int descriptionStart, int descriptionEnd);
+
+        // A line that does not start a record, normally part of a multi-line description
+        default void continuation(byte[] data, long offset, int start, int end) {
+        }
+    }
+
+    public interface AccountVisitor {
+        void account(byte[] data, int numberStart, int numberEnd, int pinStart, int pinEnd,
+                     int nameStart, int nameEnd, long balanceCents);
+    }
+
+    private interface LineVisitor {
+        // Returns false to stop reading
+        boolean line(byte[] data, long offset, int start, int end);
+    }
+
+    public static void readTransactions(Path path, long start, TransactionVisitor visitor) throws IOException {
+        forEachLine(path, start, (data, offset, lineStart, lineEnd) -> {
+            if (!parseTransaction(data, offset, lineStart, lineEnd, visitor)) {
+                visitor.continuation(data, offset, lineStart, lineEnd);
+            }
+            return true;
+        });
+    }
+
+    public static void readAccounts(Path path, AccountVisitor visitor) throws IOException {
+        forEachLine(path, 0, (data, offset, start, end) -> {
+            parseAccount(data, start, end, visitor);
+            return true;
+        });
+    }
+
+    // Timestamp of the first record in the file, or -1 if it holds none
+    public static long firstTimestamp(Path path) throws IOException {
+        long[] first = {-1};
+        forEachLine(path, 0, (data, offset, start, end) -> {
+            parseTransaction(data, offset, start, end,
+                (d, o, as, ae, ts, te, amountCents, timestamp, ds, de) -> first[0] = timestamp);
+            return first[0] < 0;
+        });
+        return first[0];
+    }
+
+    // Parses the record starting at offset with positional reads into buffer,
+    // followed by its continuation lines up to the next record or the end of
+    // the file, as readTransactions would report them. Returns the buffer,
+    // grown if the record did not fit, so callers can keep reusing it.
+    public static ByteBuffer readTransactionAt(FileChannel channel, long offset, ByteBuffer buffer,
+                                               TransactionVisitor visitor) throws IOException {
+        buffer.clear();
+        int lineStart = 0;
+        boolean eof = false;
+        while (true) {
+            byte[] data = buffer.array();
+            int limit = buffer.position();
+            int newline = indexOf(data, lineStart, limit, (byte) '\n');
+            if (newline < 0 && !eof) {
+                if (!buffer.hasRemaining()) {
+                    buffer = grow(buffer);
+                }
+                eof = channel.read(buffer, offset + buffer.position()) <= 0;
+                continue;
+            }
+            int end = newline < 0 ? limit : newline;
+            if (end > lineStart && data[end - 1] == '\r') {
+                end--;
+            }
+            if (lineStart == 0) {
+                if (!parseTransaction(data, offset, 0, end, visitor)) {
+                    return buffer;
+                }
+            } else if ((newline < 0 && end == lineStart)
+                    || parseTransaction(data, offset + lineStart, lineStart, end, RECORD_START)) {
+                return buffer;
+            } else {
+                visitor.continuation(data, offset + lineStart, lineStart, end);
+            }
+            if (newline < 0) {
+                return buffer;
+            }
+            lineStart = newline + 1;
+        }
+    }
+
+    public static boolean parseTransaction(byte[] data, long offset, int start, int end, TransactionVisitor visitor) {
+        int accountEnd = indexOf(data, start, end, (byte) ',');
+        if (accountEnd < 0) {
+            return false;
+        }
+        int typeEnd = indexOf(data, accountEnd + 1, end, (byte) ',');
+        if (typeEnd < 0) {
+            return false;
+        }
+        int amountEnd = indexOf(data, typeEnd + 1, end, (byte) ',');
+        if (amountEnd < 0) {
+            return false;
+        }
+        int timestampEnd = indexOf(data, amountEnd + 1, end, (byte) ',');
+        int descriptionStart = -1;
+        if (timestampEnd < 0) {
+            timestampEnd = end;
+        } else {
+            descriptionStart = timestampEnd + 1;
+        }
+        long amountCents = parseCents(data, typeEnd + 1, amountEnd);
+        long timestamp = parseTimestamp(data, amountEnd + 1, timestampEnd);
+        if (amountCents == INVALID_AMOUNT || timestamp < 0) {
+            return false;
+        }
+        visitor.record(data, offset, start, accountEnd, accountEnd + 1, typeEnd, amountCents, timestamp,
+            descriptionStart, descriptionStart < 0 ? -1 : end);
+        return true;
+    }
+
+    public static boolean parseAccount(byte[] data, int start, int end, AccountVisitor visitor) {
+        int numberEnd = indexOf(data, start, end, (byte) ',');
+        if (numberEnd < 0) {
+            return false;
+        }
+        int pinEnd = indexOf(data, numberEnd + 1, end, (byte) ',');
+        if (pinEnd < 0) {
+            return false;
+        }
+        int nameEnd = indexOf(data, pinEnd + 1, end, (byte) ',');
+        if (nameEnd < 0 || indexOf(data, nameEnd + 1, end, (byte) ',') >= 0) {
+            return false;
+        }
+        long balanceCents = parseCents(data, nameEnd + 1, end);
+        if (balanceCents == INVALID_AMOUNT) {
+            return false;
+        }
+        visitor.account(data, start, numberEnd, numberEnd + 1, pinEnd, pinEnd + 1, nameEnd, balanceCents);
+        return true;
+    }
+
+    // Decimal amount such as "4000.0", "12.50" or "-3" in centavos, rounded
+    // half up past the second fraction digit
+    static long parseCents(byte[] data, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && data[i] == '-') {
+            negative = true;
+            i++;
+        }
+        long whole = 0;
+        int digits = 0;
+        while (i < end && data[i] >= '0' && data[i] <= '9') {
+            whole = whole * 10 + (data[i++] - '0');
+            if (++digits > MAX_AMOUNT_DIGITS) {
+                return INVALID_AMOUNT;
+            }
+        }
+        long fraction = 0;
+        if (i < end && data[i] == '.') {
+            i++;
+            int fractionDigits = 0;
+            while (i < end && data[i] >= '0' && data[i] <= '9') {
+                int digit = data[i++] - '0';
+                if (fractionDigits < 2) {
+                    fraction = fraction * 10 + digit;
+                } else if (fractionDigits == 2 && digit >= 5) {
+                    fraction++;
+                }
+                fractionDigits++;
+                digits++;
+            }
+            if (fractionDigits == 1) {
+                fraction *= 10;
+            }
+        }
+        if (i != end || digits == 0) {
+            return INVALID_AMOUNT;
+        }
+        long cents = whole * 100 + fraction;
+        return negative ? -cents : cents;
+    }
+
+    static long parseTimestamp(byte[] data, int start, int end) {
+        if (start >= end || end - start > MAX_TIMESTAMP_DIGITS) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            if (data[i] < '0' || data[i] > '9') {
+                return -1;
+            }
+            value = value * 10 + (data[i] - '0');
+        }
+        return value;
+    }
+
+    public static String decode(byte[] data, int start, int end) {
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    public static boolean matches(byte[] data, int start, int end, byte[] expected) {
+        return end - start == expected.length
+            && Arrays.equals(data, start, end, expected, 0, expected.length);
+    }
+
+    private static void forEachLine(Path path, long start, LineVisitor visitor) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+            channel.position(start);
+            long bufferOffset = start;
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(buffer) < 0;
+                byte[] data = buffer.array();
+                int limit = buffer.position();
+                int lineStart = 0;
+                int newline;
+                while ((newline = indexOf(data, lineStart, limit, (byte) '\n')) >= 0) {
+                    int lineEnd = newline > lineStart && data[newline - 1] == '\r' ? newline - 1 : newline;
+                    if (!visitor.line(data, bufferOffset + lineStart, lineStart, lineEnd)) {
+                        return;
+                    }
+                    lineStart = newline + 1;
+                }
+                if (eof) {
+                    int lineEnd = limit > lineStart && data[limit - 1] == '\r' ? limit - 1 : limit;
+                    if (lineEnd > lineStart) {
+                        visitor.line(data, bufferOffset + lineStart, lineStart, lineEnd);
+                    }
+                    break;
+                }
+                // Keep the partial last line for the next read
+                buffer.position(lineStart);
+                buffer.limit(limit);
+                buffer.compact();
+                bufferOffset += lineStart;
+                if (!buffer.hasRemaining()) {
+                    buffer = grow(buffer);
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private static int indexOf(byte[] data, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
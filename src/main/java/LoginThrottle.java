@@ -0,0 +1,47 @@
+package main.java;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Failed PIN attempts per account. After MAX_ATTEMPTS wrong PINs in a row
+// the account is locked for LOCKOUT_DURATION. One instance is shared by the
+// ATM screens and the web API, so a PIN cannot be guessed over one after
+// being locked out on the other.
+public class LoginThrottle {
+    public static final int MAX_ATTEMPTS = 3;
+    private static final long LOCKOUT_DURATION = 300000; // 5 minutes in milliseconds
+
+    private final Map<String, Integer> failedAttempts = new HashMap<>();
+    private final Map<String, Long> lockoutTime = new HashMap<>();
+
+    // Seconds until the account unlocks, or 0 if it is not locked
+    public synchronized long lockedSeconds(String accNum) {
+        Long lockTime = lockoutTime.get(accNum);
+        if (lockTime == null) {
+            return 0;
+        }
+        long remaining = lockTime + LOCKOUT_DURATION - System.currentTimeMillis();
+        if (remaining > 0) {
+            return Math.max(1, remaining / 1000);
+        }
+        // Reset lockout if time has expired
+        lockoutTime.remove(accNum);
+        failedAttempts.remove(accNum);
+        return 0;
+    }
+
+    // Counts a wrong PIN and returns the attempts so far; the account is
+    // locked once this reaches MAX_ATTEMPTS
+    public synchronized int recordFailure(String accNum) {
+        int attempts = failedAttempts.getOrDefault(accNum, 0) + 1;
+        failedAttempts.put(accNum, attempts);
+        if (attempts >= MAX_ATTEMPTS) {
+            lockoutTime.put(accNum, System.currentTimeMillis());
+        }
+        return attempts;
+    }
+
+    public synchronized void recordSuccess(String accNum) {
+        failedAttempts.remove(accNum);
+    }
+}
@@ -0,0 +1,101 @@
+package main.java;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Accounts stored under "account/<account number>" in the shared LSM store
+public class LsmAccountStore implements AccountStore {
+    private static final String PREFIX = "account/";
+
+    private final LsmStore store;
+    private final String legacySnapshotPath;
+    private final String legacyLogPath;
+
+    public LsmAccountStore(LsmStore store, String legacySnapshotPath, String legacyLogPath) {
+        this.store = store;
+        this.legacySnapshotPath = legacySnapshotPath;
+        this.legacyLogPath = legacyLogPath;
+    }
+
+    @Override
+    public boolean exists() {
+        try {
+            return !store.scan(PREFIX).isEmpty() || hasLegacyData();
+        } catch (IOException e) {
+            System.err.println("Error reading LSM account store: " + e.getMessage());
+            return hasLegacyData();
+        }
+    }
+
+    @Override
+    public Map<String, Account> load() {
+        Map<String, Account> accounts = new HashMap<>();
+        try {
+            Map<String, byte[]> entries = store.scan(PREFIX);
+            if (entries.isEmpty() && hasLegacyData()) {
+                AccountLedger legacy = AccountLedger.open(legacySnapshotPath, legacyLogPath);
+                for (Account account : legacy.load().values()) {
+                    save(account);
+                }
+                legacy.close();
+                entries = store.scan(PREFIX);
+            }
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                String accNum = entry.getKey().substring(PREFIX.length());
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.getValue()));
+                String pin = in.readUTF();
+                String name = in.readUTF();
+                Money balance = Money.of(in.readDouble());
+                accounts.put(accNum, new Account(accNum, pin, balance, name));
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading accounts from LSM store: " + e.getMessage());
+        }
+        return accounts;
+    }
+
+    @Override
+    public void save(Account account) {
+        try {
+            store.put(PREFIX + account.getAccountNumber(), encode(account));
+        } catch (IOException e) {
+            System.err.println("Error saving account to LSM store: " + e.getMessage());
+        }
+    }
+
+    // All accounts go into one write-ahead log record, synced before returning
+    @Override
+    public void saveAll(Collection<Account> accounts) {
+        try {
+            Map<String, byte[]> entries = new LinkedHashMap<>();
+            for (Account account : accounts) {
+                entries.put(PREFIX + account.getAccountNumber(), encode(account));
+            }
+            store.write(entries);
+            store.sync();
+        } catch (IOException e) {
+            System.err.println("Error saving accounts to LSM store: " + e.getMessage());
+        }
+    }
+
+    private static byte[] encode(Account account) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(account.getPin());
+        out.writeUTF(account.getAccountHolder());
+        out.writeDouble(account.getBalance().toDouble());
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        store.sync();
+    }
+
+    private boolean hasLegacyData() {
+        return new File(legacySnapshotPath).exists() || new File(legacyLogPath).exists();
+    }
+}
@@ -0,0 +1,84 @@
+package main.java;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Deleted accounts stored under "deleted/<account number>" in the shared LSM store
+public class LsmDeletedAccountStore implements DeletedAccountStore {
+    private static final String PREFIX = "deleted/";
+
+    private final LsmStore store;
+
+    public LsmDeletedAccountStore(LsmStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<DeletedAccount> list() {
+        List<DeletedAccount> deletedAccounts = new ArrayList<>();
+        try {
+            for (byte[] value : store.scan(PREFIX).values()) {
+                try {
+                    deletedAccounts.add(decode(value));
+                } catch (Exception e) {
+                    System.err.println("Error parsing deleted account: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading deleted accounts: " + e.getMessage());
+        }
+        return deletedAccounts;
+    }
+
+    @Override
+    public DeletedAccount find(String accountNumber) {
+        try {
+            byte[] value = store.get(PREFIX + accountNumber);
+            return value == null ? null : decode(value);
+        } catch (Exception e) {
+            System.err.println("Error loading deleted account: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void add(DeletedAccount account) {
+        try {
+            store.put(PREFIX + account.getAccountNumber(), account.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Error saving deleted account: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public DeletedAccount restore(String accountNumber) {
+        DeletedAccount account = find(accountNumber);
+        if (account != null) {
+            remove(accountNumber);
+        }
+        return account;
+    }
+
+    @Override
+    public boolean purge(String accountNumber) {
+        if (find(accountNumber) == null) {
+            return false;
+        }
+        remove(accountNumber);
+        return true;
+    }
+
+    private void remove(String accountNumber) {
+        try {
+            store.delete(PREFIX + accountNumber);
+        } catch (IOException e) {
+            System.err.println("Error removing deleted account: " + e.getMessage());
+        }
+    }
+
+    private static DeletedAccount decode(byte[] value) {
+        return DeletedAccount.fromString(new String(value, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,891 @@
+package main.java;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// Embedded log-structured key-value store.
+//
+// Writes go to a write-ahead log (wal-<n>.log) and an in-memory memtable.
+// When the memtable grows past memtableBytes it is frozen, a new WAL is
+// started and a background thread writes the frozen memtable out as an
+// immutable sorted table (sst-<n>.sst) with a sparse key index and a bloom
+// filter. Once maxTables tables exist they are merged into one, dropping
+// overwritten values and tombstones. MANIFEST lists the live tables.
+public class LsmStore implements Closeable {
+    private static final String MANIFEST_FILE = "MANIFEST";
+    private static final int DEFAULT_MEMTABLE_BYTES = 4 * 1024 * 1024;
+    private static final int DEFAULT_MAX_TABLES = 4;
+    private static final long WAL_SYNC_INTERVAL_MS = 200;
+    private static final byte[] TOMBSTONE = new byte[0];
+    private static LsmStore shared;
+
+    private final File directory;
+    private final File manifestFile;
+    private final int memtableBytes;
+    private final int maxTables;
+    private final ExecutorService background;
+    private final ScheduledExecutorService walSyncer;
+    private final Object writeLock = new Object();
+    private final Object stateLock = new Object();
+    private final AtomicLong nextFileNumber = new AtomicLong();
+    private volatile State state;
+    private FileChannel wal;
+    private long walNumber;
+    private int memtableSize;
+    private boolean walDirty;
+    private Future<?> pendingFlush;
+    private boolean compacting;
+
+    // Snapshot of everything a reader needs, swapped atomically on flush/compaction
+    private static class State {
+        final ConcurrentSkipListMap<String, byte[]> memtable;
+        final ConcurrentSkipListMap<String, byte[]> frozen;
+        final List<SSTable> tables; // newest first
+
+        State(ConcurrentSkipListMap<String, byte[]> memtable, ConcurrentSkipListMap<String, byte[]> frozen, List<SSTable> tables) {
+            this.memtable = memtable;
+            this.frozen = frozen;
+            this.tables = tables;
+        }
+    }
+
+    public static synchronized LsmStore shared() throws IOException {
+        if (shared == null) {
+            shared = LsmStore.open(System.getProperty("atm.lsm.directory", "lsm_data"));
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::close));
+        }
+        return shared;
+    }
+
+    private LsmStore(String directoryPath) throws IOException {
+        this.directory = new File(directoryPath);
+        this.manifestFile = new File(directory, MANIFEST_FILE);
+        this.memtableBytes = Integer.getInteger("atm.lsm.memtableBytes", DEFAULT_MEMTABLE_BYTES);
+        this.maxTables = Integer.getInteger("atm.lsm.maxTables", DEFAULT_MAX_TABLES);
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create LSM directory " + directory);
+        }
+        this.background = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "lsm-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.walSyncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "lsm-wal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Recovers the tables and write-ahead log and starts the periodic sync
+    // once the store is fully built
+    public static LsmStore open(String directoryPath) throws IOException {
+        LsmStore store = new LsmStore(directoryPath);
+        store.start();
+        return store;
+    }
+
+    private void start() throws IOException {
+        recover();
+        walSyncer.scheduleWithFixedDelay(this::sync, WAL_SYNC_INTERVAL_MS, WAL_SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public byte[] get(String key) throws IOException {
+        State current = acquireState();
+        try {
+            byte[] value = current.memtable.get(key);
+            if (value == null && current.frozen != null) {
+                value = current.frozen.get(key);
+            }
+            if (value == null) {
+                for (SSTable table : current.tables) {
+                    value = table.get(key);
+                    if (value != null) {
+                        break;
+                    }
+                }
+            }
+            return value == null || value == TOMBSTONE ? null : value;
+        } finally {
+            releaseState(current);
+        }
+    }
+
+    // All live entries whose key starts with prefix, in key order
+    public SortedMap<String, byte[]> scan(String prefix) throws IOException {
+        State current = acquireState();
+        try {
+            TreeMap<String, byte[]> result = new TreeMap<>();
+            for (int i = current.tables.size() - 1; i >= 0; i--) {
+                current.tables.get(i).scan(prefix, result);
+            }
+            if (current.frozen != null) {
+                result.putAll(prefixView(current.frozen, prefix));
+            }
+            result.putAll(prefixView(current.memtable, prefix));
+            result.values().removeIf(value -> value == TOMBSTONE);
+            return result;
+        } finally {
+            releaseState(current);
+        }
+    }
+
+    // Returns the current state with every one of its tables retained, so
+    // a compaction finishing meanwhile cannot close or delete them under
+    // the reader. Retrying is only needed if a compaction swapped the state
+    // between reading it and retaining its tables.
+    private State acquireState() {
+        while (true) {
+            State current = state;
+            int retained = 0;
+            while (retained < current.tables.size() && current.tables.get(retained).tryRetain()) {
+                retained++;
+            }
+            if (retained == current.tables.size()) {
+                return current;
+            }
+            for (int i = 0; i < retained; i++) {
+                current.tables.get(i).release();
+            }
+        }
+    }
+
+    private static void releaseState(State current) {
+        for (SSTable table : current.tables) {
+            table.release();
+        }
+    }
+
+    public void put(String key, byte[] value) throws IOException {
+        write(Collections.singletonMap(key, value));
+    }
+
+    public void delete(String key) throws IOException {
+        write(Collections.singletonMap(key, TOMBSTONE));
+    }
+
+    // Applies every entry atomically: they share one WAL record, so after a
+    // crash either all of them or none of them are recovered. A value of
+    // null deletes the key.
+    public void write(Map<String, byte[]> entries) throws IOException {
+        synchronized (writeLock) {
+            if (wal == null) {
+                throw new IOException("LSM store is closed");
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                byte[] value = entry.getValue() == null ? TOMBSTONE : entry.getValue();
+                writeEntry(out, entry.getKey(), value);
+            }
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+            record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+            while (record.hasRemaining()) {
+                wal.write(record);
+            }
+            walDirty = true;
+
+            State current = state;
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                byte[] value = entry.getValue() == null ? TOMBSTONE : entry.getValue();
+                current.memtable.put(entry.getKey(), value);
+                memtableSize += entry.getKey().length() * 2 + value.length + 32;
+            }
+            if (memtableSize >= memtableBytes) {
+                freezeMemtable();
+            }
+        }
+    }
+
+    public void sync() {
+        synchronized (writeLock) {
+            if (wal == null || !walDirty) {
+                return;
+            }
+            try {
+                wal.force(false);
+                walDirty = false;
+            } catch (IOException e) {
+                System.err.println("Error syncing LSM write-ahead log: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            if (wal == null) {
+                return;
+            }
+            walSyncer.shutdown();
+            try {
+                wal.force(false);
+                wal.close();
+            } catch (IOException e) {
+                System.err.println("Error closing LSM write-ahead log: " + e.getMessage());
+            }
+            wal = null;
+        }
+        background.shutdown();
+        try {
+            background.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SSTable table : state.tables) {
+            table.release();
+        }
+    }
+
+    private void freezeMemtable() throws IOException {
+        waitForFlush();
+        State current = state;
+        long frozenWal = walNumber;
+        wal.force(false);
+        wal.close();
+        openWal(nextFileNumber.getAndIncrement());
+        memtableSize = 0;
+        synchronized (stateLock) {
+            state = new State(new ConcurrentSkipListMap<>(), current.memtable, state.tables);
+        }
+        pendingFlush = background.submit(() -> flushFrozen(frozenWal));
+    }
+
+    private void waitForFlush() throws IOException {
+        if (pendingFlush == null) {
+            return;
+        }
+        try {
+            pendingFlush.get();
+        } catch (Exception e) {
+            throw new IOException("Memtable flush failed", e);
+        } finally {
+            pendingFlush = null;
+        }
+    }
+
+    private void flushFrozen(long frozenWal) {
+        try {
+            State current = state;
+            File file = tableFile(allocateFileNumber());
+            SSTable.write(file, current.frozen.entrySet().iterator(), current.frozen.size());
+            SSTable table = SSTable.open(file);
+            synchronized (stateLock) {
+                List<SSTable> tables = new ArrayList<>(state.tables);
+                tables.add(0, table);
+                writeManifest(tables);
+                state = new State(state.memtable, null, Collections.unmodifiableList(tables));
+            }
+            Files.deleteIfExists(walFile(frozenWal).toPath());
+            maybeCompact();
+        } catch (IOException e) {
+            System.err.println("Error flushing LSM memtable: " + e.getMessage());
+        }
+    }
+
+    private void maybeCompact() throws IOException {
+        List<SSTable> inputs = state.tables;
+        if (inputs.size() < maxTables || compacting) {
+            return;
+        }
+        compacting = true;
+        try {
+            File file = tableFile(allocateFileNumber());
+            List<Iterator<Map.Entry<String, byte[]>>> iterators = new ArrayList<>();
+            for (SSTable table : inputs) {
+                iterators.add(table.iterator());
+            }
+            // Every table takes part, so tombstones have nothing left to shadow
+            SSTable.write(file, new MergingIterator(iterators, true), -1);
+            SSTable merged = SSTable.open(file);
+            synchronized (stateLock) {
+                List<SSTable> tables = new ArrayList<>(state.tables);
+                tables.removeAll(inputs);
+                tables.add(merged);
+                writeManifest(tables);
+                state = new State(state.memtable, state.frozen, Collections.unmodifiableList(tables));
+            }
+            // Readers still holding the old state keep the inputs open; the
+            // last one to let go closes and deletes each file
+            for (SSTable table : inputs) {
+                table.retire();
+            }
+        } finally {
+            compacting = false;
+        }
+    }
+
+    private void recover() throws IOException {
+        List<SSTable> tables = new ArrayList<>();
+        if (manifestFile.exists()) {
+            for (String name : Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+                if (!name.isBlank()) {
+                    tables.add(SSTable.open(new File(directory, name)));
+                    nextFileNumber.accumulateAndGet(fileNumber(name) + 1, Math::max);
+                }
+            }
+        }
+        ConcurrentSkipListMap<String, byte[]> memtable = new ConcurrentSkipListMap<>();
+        List<Long> wals = new ArrayList<>();
+        String[] names = directory.list();
+        for (String name : names == null ? new String[0] : names) {
+            if (name.startsWith("wal-") && name.endsWith(".log")) {
+                wals.add(fileNumber(name));
+            }
+            if (name.startsWith("wal-") || name.startsWith("sst-")) {
+                nextFileNumber.accumulateAndGet(fileNumber(name) + 1, Math::max);
+            }
+        }
+        Collections.sort(wals);
+        for (long number : wals) {
+            replayWal(walFile(number), memtable);
+        }
+        state = new State(memtable, null, Collections.unmodifiableList(tables));
+        if (wals.size() == 1) {
+            // Keep appending to the log we just replayed
+            openWal(wals.get(0));
+            return;
+        }
+        if (!memtable.isEmpty()) {
+            // Several logs survived a crash mid-flush, fold them into one table
+            File file = tableFile(nextFileNumber.getAndIncrement());
+            SSTable.write(file, memtable.entrySet().iterator(), memtable.size());
+            tables.add(0, SSTable.open(file));
+            writeManifest(tables);
+            state = new State(new ConcurrentSkipListMap<>(), null, Collections.unmodifiableList(tables));
+            memtableSize = 0;
+        }
+        for (long number : wals) {
+            Files.deleteIfExists(walFile(number).toPath());
+        }
+        openWal(nextFileNumber.getAndIncrement());
+    }
+
+    private void replayWal(File file, Map<String, byte[]> memtable) throws IOException {
+        byte[] log = Files.readAllBytes(file.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(log);
+        CRC32 crc = new CRC32();
+        long validLength = 0;
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(log, buffer.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(log, buffer.position(), length));
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                byte kind = in.readByte();
+                byte[] value = TOMBSTONE;
+                if (kind == SSTable.KIND_PUT) {
+                    value = new byte[in.readInt()];
+                    in.readFully(value);
+                }
+                memtable.put(key, value);
+                memtableSize += key.length() * 2 + value.length + 32;
+            }
+            buffer.position(buffer.position() + length);
+            validLength = buffer.position();
+        }
+        if (validLength < log.length) {
+            System.err.println("Truncating corrupt LSM write-ahead log tail in " + file.getName());
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+    }
+
+    private void openWal(long number) throws IOException {
+        walNumber = number;
+        wal = FileChannel.open(walFile(number).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        wal.position(wal.size());
+    }
+
+    private void writeManifest(List<SSTable> tables) throws IOException {
+        AtomicFile.write(manifestFile, out -> {
+            for (SSTable table : tables) {
+                out.println(table.file.getName());
+            }
+        });
+    }
+
+    private long allocateFileNumber() {
+        return nextFileNumber.getAndIncrement();
+    }
+
+    private File walFile(long number) {
+        return new File(directory, String.format("wal-%08d.log", number));
+    }
+
+    private File tableFile(long number) {
+        return new File(directory, String.format("sst-%08d.sst", number));
+    }
+
+    private static long fileNumber(String name) {
+        return Long.parseLong(name.substring(4, name.indexOf('.')));
+    }
+
+    private static SortedMap<String, byte[]> prefixView(ConcurrentSkipListMap<String, byte[]> map, String prefix) {
+        return map.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+    }
+
+    private static void writeEntry(DataOutputStream out, String key, byte[] value) throws IOException {
+        out.writeUTF(key);
+        if (value == TOMBSTONE) {
+            out.writeByte(SSTable.KIND_DELETE);
+        } else {
+            out.writeByte(SSTable.KIND_PUT);
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    // K-way merge over sorted iterators; earlier iterators win on equal keys
+    private static class MergingIterator implements Iterator<Map.Entry<String, byte[]>> {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>();
+        private final boolean dropTombstones;
+        private Map.Entry<String, byte[]> next;
+
+        private static class Head implements Comparable<Head> {
+            final int rank;
+            final Iterator<Map.Entry<String, byte[]>> iterator;
+            Map.Entry<String, byte[]> entry;
+
+            Head(int rank, Iterator<Map.Entry<String, byte[]>> iterator) {
+                this.rank = rank;
+                this.iterator = iterator;
+                this.entry = iterator.next();
+            }
+
+            @Override
+            public int compareTo(Head other) {
+                int byKey = entry.getKey().compareTo(other.entry.getKey());
+                return byKey != 0 ? byKey : Integer.compare(rank, other.rank);
+            }
+        }
+
+        MergingIterator(List<Iterator<Map.Entry<String, byte[]>>> iterators, boolean dropTombstones) {
+            this.dropTombstones = dropTombstones;
+            for (int i = 0; i < iterators.size(); i++) {
+                if (iterators.get(i).hasNext()) {
+                    heads.add(new Head(i, iterators.get(i)));
+                }
+            }
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && !heads.isEmpty()) {
+                Head head = heads.poll();
+                Map.Entry<String, byte[]> candidate = head.entry;
+                requeue(head);
+                while (!heads.isEmpty() && heads.peek().entry.getKey().equals(candidate.getKey())) {
+                    requeue(heads.poll());
+                }
+                if (!(dropTombstones && candidate.getValue() == TOMBSTONE)) {
+                    next = candidate;
+                }
+            }
+        }
+
+        private void requeue(Head head) {
+            if (head.iterator.hasNext()) {
+                head.entry = head.iterator.next();
+                heads.add(head);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, byte[]> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, byte[]> result = next;
+            advance();
+            return result;
+        }
+    }
+
+    // Immutable sorted table:
+    //   header  [int magic][int version]
+    //   data    ([UTF key][byte kind][int valueLength][value])*  (value omitted for deletes)
+    //   index   [int count]([UTF key][long offset])*  one entry per INDEX_INTERVAL keys
+    //   bloom   [int hashes][int words][long]*
+    //   footer  [long indexOffset][long bloomOffset][long dataEnd][int magic]
+    private static class SSTable {
+        static final byte KIND_PUT = 0;
+        static final byte KIND_DELETE = 1;
+        private static final int MAGIC = 0x4C534D54; // "LSMT"
+        private static final int VERSION = 1;
+        private static final int FOOTER_SIZE = 28;
+        private static final int INDEX_INTERVAL = 16;
+        private static final int BLOOM_BITS_PER_KEY = 10;
+        private static final int BLOOM_HASHES = 7;
+
+        final File file;
+        private final FileChannel channel;
+        // One reference held by the store while the table is live, plus one
+        // per reader using it. The file is closed when the count drops to 0.
+        private final AtomicInteger references = new AtomicInteger(1);
+        private volatile boolean obsolete;
+        private final String[] indexKeys;
+        private final long[] indexOffsets;
+        private final long dataEnd;
+        private final long[] bloom;
+
+        private SSTable(File file, FileChannel channel, String[] indexKeys, long[] indexOffsets, long dataEnd, long[] bloom) {
+            this.file = file;
+            this.channel = channel;
+            this.indexKeys = indexKeys;
+            this.indexOffsets = indexOffsets;
+            this.dataEnd = dataEnd;
+            this.bloom = bloom;
+        }
+
+        static void write(File file, Iterator<Map.Entry<String, byte[]>> entries, int expectedCount) throws IOException {
+            File temp = new File(file.getPath() + ".tmp");
+            List<String> indexKeys = new ArrayList<>();
+            List<Long> indexOffsets = new ArrayList<>();
+            List<String> keys = new ArrayList<>(Math.max(expectedCount, 16));
+            try (FileOutputStream fos = new FileOutputStream(temp)) {
+                CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+                DataOutputStream out = new DataOutputStream(counter);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                int count = 0;
+                while (entries.hasNext()) {
+                    Map.Entry<String, byte[]> entry = entries.next();
+                    if (count % INDEX_INTERVAL == 0) {
+                        out.flush();
+                        indexKeys.add(entry.getKey());
+                        indexOffsets.add(counter.count);
+                    }
+                    writeEntry(out, entry.getKey(), entry.getValue());
+                    keys.add(entry.getKey());
+                    count++;
+                }
+                out.flush();
+                long dataEnd = counter.count;
+
+                out.writeInt(indexKeys.size());
+                for (int i = 0; i < indexKeys.size(); i++) {
+                    out.writeUTF(indexKeys.get(i));
+                    out.writeLong(indexOffsets.get(i));
+                }
+                out.flush();
+                long bloomOffset = counter.count;
+
+                long[] bloom = new long[Math.max(1, (keys.size() * BLOOM_BITS_PER_KEY + 63) / 64)];
+                for (String key : keys) {
+                    addToBloom(bloom, key);
+                }
+                out.writeInt(BLOOM_HASHES);
+                out.writeInt(bloom.length);
+                for (long word : bloom) {
+                    out.writeLong(word);
+                }
+
+                out.writeLong(dataEnd); // the index starts where the data ends
+                out.writeLong(bloomOffset);
+                out.writeLong(dataEnd);
+                out.writeInt(MAGIC);
+                out.flush();
+                fos.getFD().sync();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        static SSTable open(File file) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            long size = channel.size();
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            channel.read(footer, size - FOOTER_SIZE);
+            footer.flip();
+            long indexOffset = footer.getLong();
+            footer.getLong(); // bloom offset
+            long dataEnd = footer.getLong();
+            if (footer.getInt() != MAGIC) {
+                channel.close();
+                throw new IOException("Corrupt SSTable " + file);
+            }
+            ByteBuffer meta = ByteBuffer.allocate((int) (size - FOOTER_SIZE - indexOffset));
+            channel.read(meta, indexOffset);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(meta.array()));
+            int indexCount = in.readInt();
+            String[] indexKeys = new String[indexCount];
+            long[] indexOffsets = new long[indexCount];
+            for (int i = 0; i < indexCount; i++) {
+                indexKeys[i] = in.readUTF();
+                indexOffsets[i] = in.readLong();
+            }
+            // The bloom filter directly follows the index
+            in.readInt(); // hash count, fixed at BLOOM_HASHES for version 1
+            long[] bloom = new long[in.readInt()];
+            for (int i = 0; i < bloom.length; i++) {
+                bloom[i] = in.readLong();
+            }
+            return new SSTable(file, channel, indexKeys, indexOffsets, dataEnd, bloom);
+        }
+
+        byte[] get(String key) throws IOException {
+            if (indexKeys.length == 0 || !mightContain(bloom, key)) {
+                return null;
+            }
+            int block = Arrays.binarySearch(indexKeys, key);
+            if (block < 0) {
+                block = -block - 2;
+                if (block < 0) {
+                    return null;
+                }
+            }
+            DataInputStream in = readBlock(block);
+            for (int i = 0; i < INDEX_INTERVAL && in.available() > 0; i++) {
+                String entryKey = in.readUTF();
+                byte[] value = readValue(in);
+                int cmp = entryKey.compareTo(key);
+                if (cmp == 0) {
+                    return value;
+                }
+                if (cmp > 0) {
+                    break;
+                }
+            }
+            return null;
+        }
+
+        void scan(String prefix, Map<String, byte[]> into) throws IOException {
+            if (indexKeys.length == 0) {
+                return;
+            }
+            int block = Arrays.binarySearch(indexKeys, prefix);
+            if (block < 0) {
+                block = Math.max(0, -block - 2);
+            }
+            for (; block < indexKeys.length; block++) {
+                DataInputStream in = readBlock(block);
+                while (in.available() > 0) {
+                    String key = in.readUTF();
+                    byte[] value = readValue(in);
+                    if (key.startsWith(prefix)) {
+                        into.put(key, value);
+                    } else if (key.compareTo(prefix) > 0) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        Iterator<Map.Entry<String, byte[]>> iterator() throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new LimitedInputStream(Files.newInputStream(file.toPath()), dataEnd), 64 * 1024));
+            in.readInt(); // magic
+            in.readInt(); // version
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    try {
+                        in.mark(1);
+                        if (in.read() >= 0) {
+                            in.reset();
+                            return true;
+                        }
+                        in.close();
+                        return false;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public Map.Entry<String, byte[]> next() {
+                    try {
+                        String key = in.readUTF();
+                        return new AbstractMap.SimpleImmutableEntry<>(key, readValue(in));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+
+        boolean tryRetain() {
+            while (true) {
+                int count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                close();
+                if (obsolete) {
+                    try {
+                        Files.deleteIfExists(file.toPath());
+                    } catch (IOException e) {
+                        System.err.println("Error deleting SSTable " + file.getName() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        // Drops the store's reference to a table that compaction replaced
+        void retire() {
+            obsolete = true;
+            release();
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing SSTable " + file.getName() + ": " + e.getMessage());
+            }
+        }
+
+        private DataInputStream readBlock(int block) throws IOException {
+            long start = indexOffsets[block];
+            long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+            ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException("Truncated SSTable " + file);
+                }
+            }
+            return new DataInputStream(new ByteArrayInputStream(buffer.array()));
+        }
+
+        private static byte[] readValue(DataInputStream in) throws IOException {
+            if (in.readByte() == KIND_DELETE) {
+                return TOMBSTONE;
+            }
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            return value;
+        }
+
+        private static void addToBloom(long[] bloom, String key) {
+            int h1 = key.hashCode();
+            int h2 = secondHash(key);
+            long bits = (long) bloom.length * 64;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                bloom[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        private static boolean mightContain(long[] bloom, String key) {
+            int h1 = key.hashCode();
+            int h2 = secondHash(key);
+            long bits = (long) bloom.length * 64;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int secondHash(String key) {
+            int h = 0x811C9DC5;
+            for (int i = 0; i < key.length(); i++) {
+                h = (h ^ key.charAt(i)) * 0x01000193;
+            }
+            return h | 1;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+}
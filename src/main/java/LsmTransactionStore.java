@@ -0,0 +1,60 @@
+package main.java;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keys are "txn/<account>/<zero-padded timestamp>/<sequence>" so a prefix
+// scan returns one account's history in time order
+public class LsmTransactionStore implements TransactionStore {
+    private static final String PREFIX = "txn/";
+
+    private final LsmStore store;
+    private final AtomicLong sequence = new AtomicLong(System.nanoTime() & 0xFFFFFFFFL);
+
+    public LsmTransactionStore(LsmStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public CompletableFuture<Void> append(String accountNumber, String type, Money amount, long timestamp, String description) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(type);
+            out.writeDouble(amount.toDouble());
+            out.writeBoolean(description != null);
+            if (description != null) {
+                out.writeUTF(description);
+            }
+            String key = String.format("%s%s/%019d/%010d", PREFIX, accountNumber, timestamp,
+                sequence.incrementAndGet() % 10_000_000_000L);
+            store.put(key, bytes.toByteArray());
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public List<TransactionHistory.Transaction> read(String accountNumber, long from, long to) throws IOException {
+        String prefix = PREFIX + accountNumber + "/";
+        List<TransactionHistory.Transaction> transactions = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry : store.scan(prefix).entrySet()) {
+            String key = entry.getKey();
+            long timestamp = Long.parseLong(key.substring(prefix.length(), key.indexOf('/', prefix.length())));
+            if (timestamp < from || timestamp > to) {
+                continue;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.getValue()));
+            String type = in.readUTF();
+            Money amount = Money.of(in.readDouble());
+            String description = in.readBoolean() ? in.readUTF() : "";
+            transactions.add(new TransactionHistory.Transaction(accountNumber, type, amount, timestamp, description));
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,318 @@
+package main.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Fixed-width account store kept in a memory-mapped file (accounts.dat).
+// The slot array is itself an open-addressing hash table keyed by account
+// number, so saving an account rewrites exactly one 128-byte slot in place.
+public class MappedAccountStore implements AccountStore {
+    private static final int MAGIC = 0x41544D41; // "ATMA"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Slot layout
+    private static final int SLOT_SIZE = 128;
+    private static final int STATE_OFFSET = 0;
+    private static final int ACC_NUM_OFFSET = 1;
+    private static final int ACC_NUM_MAX = 24;
+    private static final int PIN_OFFSET = 26;
+    private static final int PIN_MAX = 8;
+    private static final int NAME_OFFSET = 35;
+    private static final int NAME_MAX = 84;
+    private static final int BALANCE_OFFSET = 120;
+
+    private static final byte SLOT_EMPTY = 0;
+    private static final byte SLOT_USED = 1;
+    private static final long FORCE_INTERVAL_MS = 200;
+
+    private final File dataFile;
+    private final String legacySnapshotPath;
+    private final String legacyLogPath;
+    private final ScheduledExecutorService forceScheduler;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int capacity;
+    private int used;
+    private boolean dirty;
+
+    private MappedAccountStore(String dataPath, String legacySnapshotPath, String legacyLogPath) {
+        this.dataFile = new File(dataPath);
+        this.legacySnapshotPath = legacySnapshotPath;
+        this.legacyLogPath = legacyLogPath;
+        this.forceScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mapped-account-store-force");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // The periodic force and shutdown hook are started once the store is
+    // fully built
+    public static MappedAccountStore open(String dataPath, String legacySnapshotPath, String legacyLogPath) {
+        MappedAccountStore store = new MappedAccountStore(dataPath, legacySnapshotPath, legacyLogPath);
+        store.start();
+        return store;
+    }
+
+    private void start() {
+        forceScheduler.scheduleWithFixedDelay(this::force, FORCE_INTERVAL_MS, FORCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    @Override
+    public boolean exists() {
+        return dataFile.exists() || new File(legacySnapshotPath).exists() || new File(legacyLogPath).exists();
+    }
+
+    @Override
+    public synchronized Map<String, Account> load() {
+        boolean migrate = !dataFile.exists();
+        try {
+            open();
+        } catch (IOException e) {
+            System.err.println("Error opening mapped account store: " + e.getMessage());
+            return new HashMap<>();
+        }
+
+        if (migrate && (new File(legacySnapshotPath).exists() || new File(legacyLogPath).exists())) {
+            AccountLedger legacy = AccountLedger.open(legacySnapshotPath, legacyLogPath);
+            for (Account account : legacy.load().values()) {
+                save(account);
+            }
+            legacy.close();
+        }
+
+        Map<String, Account> accounts = new HashMap<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = slotBase(slot);
+            if (map.get(base + STATE_OFFSET) == SLOT_USED) {
+                String accNum = readField(base + ACC_NUM_OFFSET);
+                accounts.put(accNum, new Account(accNum,
+                    readField(base + PIN_OFFSET),
+                    Money.of(map.getDouble(base + BALANCE_OFFSET)),
+                    readField(base + NAME_OFFSET)));
+            }
+        }
+        return accounts;
+    }
+
+    @Override
+    public synchronized void save(Account account) {
+        if (map == null) {
+            System.err.println("Mapped account store is not open, dropping update for " + account.getAccountNumber());
+            return;
+        }
+        byte[] accNum = encode(account.getAccountNumber(), ACC_NUM_MAX, "Account number");
+        byte[] pin = encode(account.getPin(), PIN_MAX, "PIN");
+        byte[] name = encode(account.getAccountHolder(), NAME_MAX, "Account holder name");
+
+        int slot = findSlot(accNum);
+        if (map.get(slotBase(slot) + STATE_OFFSET) != SLOT_USED) {
+            if ((used + 1) * 2 > capacity) {
+                try {
+                    grow();
+                } catch (IOException e) {
+                    System.err.println("Error growing mapped account store: " + e.getMessage());
+                    return;
+                }
+                slot = findSlot(accNum);
+            }
+            used++;
+            map.putInt(12, used);
+        }
+        writeSlot(slotBase(slot), accNum, pin, name, account.getBalance().toDouble());
+        dirty = true;
+    }
+
+    // Slots are updated in place, so a batch cannot be atomic here; it is at
+    // least on disk before this returns
+    @Override
+    public synchronized void saveAll(Collection<Account> accounts) {
+        for (Account account : accounts) {
+            save(account);
+        }
+        force();
+    }
+
+    public synchronized void force() {
+        if (map != null && dirty) {
+            map.force();
+            dirty = false;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        forceScheduler.shutdown();
+        if (channel == null) {
+            return;
+        }
+        force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing mapped account store: " + e.getMessage());
+        }
+        channel = null;
+        map = null;
+    }
+
+    private void open() throws IOException {
+        // Left behind by a grow that did not reach its rename
+        tempFile().delete();
+        channel = FileChannel.open(dataFile.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_SIZE) {
+            capacity = INITIAL_CAPACITY;
+            used = 0;
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.putInt(8, capacity);
+            map.putInt(12, used);
+            map.force();
+            return;
+        }
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Unrecognised account store format in " + dataFile);
+        }
+        capacity = header.getInt(8);
+        used = header.getInt(12);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+    }
+
+    // Doubles the table. The rehashed table is written to a temp file,
+    // forced, and renamed over accounts.dat the way AtomicFile does, so a
+    // crash part way leaves either the old table or the new one, never a mix.
+    private void grow() throws IOException {
+        force();
+        int newCapacity = capacity * 2;
+        File temp = tempFile();
+        MappedByteBuffer resized;
+        try (FileChannel tempChannel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            resized = tempChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(newCapacity));
+            resized.putInt(0, MAGIC);
+            resized.putInt(4, VERSION);
+            resized.putInt(8, newCapacity);
+            resized.putInt(12, used);
+            // The rest of a new file reads as zero, which is SLOT_EMPTY
+            byte[] copy = new byte[SLOT_SIZE];
+            for (int slot = 0; slot < capacity; slot++) {
+                int base = slotBase(slot);
+                if (map.get(base + STATE_OFFSET) == SLOT_USED) {
+                    map.get(base, copy);
+                    byte[] accNum = new byte[copy[ACC_NUM_OFFSET]];
+                    System.arraycopy(copy, ACC_NUM_OFFSET + 1, accNum, 0, accNum.length);
+                    resized.put(slotBase(findSlot(resized, newCapacity, accNum)), copy);
+                }
+            }
+            resized.force();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        try {
+            Files.move(temp.toPath(), dataFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        // The old channel still refers to the replaced file
+        channel.close();
+        channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(newCapacity));
+        capacity = newCapacity;
+    }
+
+    private File tempFile() {
+        return new File(dataFile.getPath() + ".tmp");
+    }
+
+    private int findSlot(byte[] accNum) {
+        return findSlot(map, capacity, accNum);
+    }
+
+    private static int findSlot(MappedByteBuffer table, int capacity, byte[] accNum) {
+        int mask = capacity - 1;
+        int slot = hash(accNum) & mask;
+        while (true) {
+            int base = slotBase(slot);
+            if (table.get(base + STATE_OFFSET) != SLOT_USED || keyEquals(table, base, accNum)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static boolean keyEquals(MappedByteBuffer table, int base, byte[] accNum) {
+        if (table.get(base + ACC_NUM_OFFSET) != accNum.length) {
+            return false;
+        }
+        for (int i = 0; i < accNum.length; i++) {
+            if (table.get(base + ACC_NUM_OFFSET + 1 + i) != accNum[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeSlot(int base, byte[] accNum, byte[] pin, byte[] name, double balance) {
+        writeField(base + ACC_NUM_OFFSET, accNum);
+        writeField(base + PIN_OFFSET, pin);
+        writeField(base + NAME_OFFSET, name);
+        map.putDouble(base + BALANCE_OFFSET, balance);
+        map.put(base + STATE_OFFSET, SLOT_USED);
+    }
+
+    private void writeField(int offset, byte[] value) {
+        map.put(offset, (byte) value.length);
+        map.put(offset + 1, value);
+    }
+
+    private String readField(int offset) {
+        byte[] value = new byte[map.get(offset)];
+        map.get(offset + 1, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(String value, int max, String field) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > max) {
+            throw new IllegalArgumentException(field + " is too long for the mapped account store");
+        }
+        return bytes;
+    }
+
+    private static int hash(byte[] key) {
+        int h = 0x811C9DC5;
+        for (byte b : key) {
+            h = (h ^ b) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static int slotBase(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static long fileSize(int capacity) {
+        return HEADER_SIZE + (long) capacity * SLOT_SIZE;
+    }
+}
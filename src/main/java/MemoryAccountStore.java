@@ -0,0 +1,31 @@
+package main.java;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// Keeps accounts only in memory, for the load test and benchmark harnesses,
+// so a run measures the code under test rather than account persistence
+public class MemoryAccountStore implements AccountStore {
+    @Override
+    public boolean exists() {
+        return false;
+    }
+
+    @Override
+    public Map<String, Account> load() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public void save(Account account) {
+    }
+
+    @Override
+    public void saveAll(Collection<Account> accounts) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
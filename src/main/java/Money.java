@@ -0,0 +1,154 @@
+package main.java;
+
+// Immutable peso amount held as a whole number of centavos, so sums and
+// differences are exact. toString gives the plain "1234.50" form used in the
+// data files and toDisplayString the "₱1,234.50" form used on screen; both
+// are built directly from the long without going through String.format.
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    // Rounds to the nearest centavo
+    public static Money of(double amount) {
+        return ofCents(Math.round(amount * 100));
+    }
+
+    // Accepts "1234", "1234.5", "-12.34" and rounds half up past two decimals
+    public static Money parse(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long whole = 0;
+        int digits = 0;
+        while (i < length && Character.isDigit(text.charAt(i))) {
+            whole = Math.addExact(Math.multiplyExact(whole, 10), text.charAt(i++) - '0');
+            digits++;
+        }
+        long fraction = 0;
+        if (i < length && text.charAt(i) == '.') {
+            i++;
+            int fractionDigits = 0;
+            while (i < length && Character.isDigit(text.charAt(i))) {
+                int digit = text.charAt(i++) - '0';
+                if (fractionDigits < 2) {
+                    fraction = fraction * 10 + digit;
+                } else if (fractionDigits == 2 && digit >= 5) {
+                    fraction++;
+                }
+                fractionDigits++;
+                digits++;
+            }
+            if (fractionDigits == 1) {
+                fraction *= 10;
+            }
+        }
+        if (i != length || digits == 0) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        long cents = Math.addExact(Math.multiplyExact(whole, 100), fraction);
+        return ofCents(negative ? -cents : cents);
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    public double toDouble() {
+        return cents / 100.0;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    public boolean isZero() {
+        return cents == 0;
+    }
+
+    public boolean isGreaterThan(Money other) {
+        return cents > other.cents;
+    }
+
+    // Whole pesos divisible by the given number of pesos, e.g. multiples of 100
+    public boolean isMultipleOf(long pesos) {
+        return cents % (pesos * 100) == 0;
+    }
+
+    public StringBuilder appendTo(StringBuilder out) {
+        return appendTo(out, false);
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(24)).toString();
+    }
+
+    public String toDisplayString() {
+        return appendTo(new StringBuilder(24).append('₱'), true).toString();
+    }
+
+    private StringBuilder appendTo(StringBuilder out, boolean grouping) {
+        long abs = Math.abs(cents);
+        if (cents < 0) {
+            out.append('-');
+        }
+        long pesos = abs / 100;
+        int centavos = (int) (abs % 100);
+        if (grouping) {
+            appendGrouped(out, pesos);
+        } else {
+            out.append(pesos);
+        }
+        return out.append('.').append((char) ('0' + centavos / 10)).append((char) ('0' + centavos % 10));
+    }
+
+    private static void appendGrouped(StringBuilder out, long value) {
+        if (value < 1000) {
+            out.append(value);
+            return;
+        }
+        appendGrouped(out, value / 1000);
+        int group = (int) (value % 1000);
+        out.append(',').append((char) ('0' + group / 100)).append((char) ('0' + group / 10 % 10)).append((char) ('0' + group % 10));
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && other.cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+}
@@ -0,0 +1,402 @@
+package main.java;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// HttpExchange for NioWebServer, so the existing handlers run on it as they
+// are. The request body has been read in full before the handler is called.
+// The response is encoded into pooled direct buffers, which are handed to
+// the connection as they fill. A response of unknown length is framed as
+// chunks in place: each buffer reserves room for its chunk header up front.
+public class NioHttpExchange extends HttpExchange {
+    // Fixed-width chunk header, "hhhh\r\n"; a buffer never holds more than
+    // 0xFFFF bytes of one chunk
+    private static final int CHUNK_HEADER = 6;
+    private static final int CHUNK_TRAILER = 2;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes();
+
+    private final NioWebServer server;
+    private final NioWebServer.Connection connection;
+    private final HttpContext context;
+    private final String method;
+    private final URI uri;
+    private final String protocol;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders = new Headers();
+    private InputStream requestBody;
+    private final ResponseStream responseStream = new ResponseStream();
+    private OutputStream responseBody = responseStream;
+    private Map<String, Object> attributes;
+    private int responseCode = -1;
+    private boolean closed;
+
+    NioHttpExchange(NioWebServer server, NioWebServer.Connection connection, HttpContext context,
+            String method, URI uri, String protocol, Headers requestHeaders, byte[] body) {
+        this.server = server;
+        this.connection = connection;
+        this.context = context;
+        this.method = method;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.requestHeaders = requestHeaders;
+        this.requestBody = new ByteArrayInputStream(body);
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return context;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    // length > 0 is a fixed-length body, 0 a body of unknown length and -1
+    // no body, as for com.sun.net.httpserver
+    @Override
+    public void sendResponseHeaders(int responseCode, long responseLength) throws IOException {
+        if (this.responseCode != -1) {
+            throw new IOException("Response headers already sent");
+        }
+        this.responseCode = responseCode;
+        boolean head = "HEAD".equals(method);
+        boolean bodyless = head || responseCode < 200 || responseCode == 204 || responseCode == 304;
+        boolean http11 = protocol.equals("HTTP/1.1");
+        ResponseStream out = responseStream;
+        if (responseLength > 0) {
+            if (!head || !responseHeaders.containsKey("Content-Length")) {
+                responseHeaders.set("Content-Length", String.valueOf(responseLength));
+            }
+            out.remaining = bodyless ? 0 : responseLength;
+        } else if (responseLength == 0 && !bodyless) {
+            if (http11) {
+                responseHeaders.set("Transfer-Encoding", "chunked");
+                out.chunked = true;
+            } else {
+                // An HTTP/1.0 client reads to the end of the connection
+                out.closeAfter = true;
+                out.remaining = Long.MAX_VALUE;
+            }
+        } else if (!bodyless) {
+            responseHeaders.set("Content-Length", "0");
+        }
+        out.discard = head;
+        if (!connection.isKeepAlive() || out.closeAfter) {
+            responseHeaders.set("Connection", "close");
+            out.closeAfter = true;
+        } else if (!http11) {
+            responseHeaders.set("Connection", "keep-alive");
+        }
+        responseHeaders.set("Date", DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)));
+        out.begin(responseCode);
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes == null ? null : attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            requestBody = i;
+        }
+        if (o != null) {
+            responseBody = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+
+    // Ends the response. A response that was never started, or whose body
+    // came up short of its Content-Length, closes the connection.
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (responseCode == -1) {
+            connection.finish(true);
+            return;
+        }
+        responseStream.finish();
+    }
+
+    // Called when the handler failed: answers 500 if nothing was sent yet,
+    // and in any case drops the connection after this response
+    void abort() {
+        if (closed) {
+            return;
+        }
+        if (responseCode == -1) {
+            try {
+                sendResponseHeaders(500, -1);
+            } catch (IOException e) {
+                // Nothing was written yet
+            }
+        }
+        responseStream.closeAfter = true;
+    }
+
+    private class ResponseStream extends OutputStream {
+        private ByteBuffer current;
+        private boolean chunked;
+        private boolean discard;
+        private boolean closeAfter;
+        // Body bytes still allowed for a fixed-length or close-delimited body
+        private long remaining;
+        // Where the open chunk's header goes in current
+        private int chunkStart;
+
+        private void begin(int statusCode) throws IOException {
+            current = server.acquireBuffer();
+            try {
+                writeHead(statusCode);
+            } catch (IOException e) {
+                server.releaseBuffer(current);
+                current = null;
+                throw e;
+            }
+            if (chunked) {
+                beginChunk();
+            }
+        }
+
+        private void writeHead(int statusCode) throws IOException {
+            putAscii("HTTP/1.1 " + statusCode + " " + reason(statusCode) + "\r\n");
+            for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+                for (String value : header.getValue()) {
+                    putAscii(header.getKey() + ": " + value + "\r\n");
+                }
+            }
+            putAscii("\r\n");
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkWritable(1);
+            if (discard) {
+                return;
+            }
+            if (room() == 0) {
+                push();
+            }
+            current.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkWritable(len);
+            if (discard) {
+                return;
+            }
+            while (len > 0) {
+                if (room() == 0) {
+                    push();
+                }
+                int count = Math.min(len, room());
+                current.put(b, off, count);
+                off += count;
+                len -= count;
+            }
+        }
+
+        // Hands what has been written so far to the connection
+        @Override
+        public void flush() throws IOException {
+            if (current != null && !discard && current.position() > (chunked ? chunkStart + CHUNK_HEADER : 0)) {
+                push();
+            }
+        }
+
+        @Override
+        public void close() {
+            NioHttpExchange.this.close();
+        }
+
+        private void finish() {
+            if (current == null) {
+                // The headers could not be encoded
+                connection.finish(true);
+                return;
+            }
+            if (!discard && remaining > 0 && remaining != Long.MAX_VALUE) {
+                // Short body, the client would wait for the rest
+                closeAfter = true;
+            }
+            if (chunked) {
+                endChunk();
+                if (current.remaining() < LAST_CHUNK.length) {
+                    send();
+                    current = server.acquireBuffer();
+                }
+                current.put(LAST_CHUNK);
+            }
+            send();
+            current = null;
+            connection.finish(closeAfter);
+        }
+
+        private void checkWritable(int count) throws IOException {
+            if (current == null) {
+                throw new IOException(closed ? "Response already closed" : "Response headers not sent");
+            }
+            if (!chunked && !discard) {
+                if (count > remaining) {
+                    throw new IOException("Too many bytes written to response body");
+                }
+                remaining -= count;
+            }
+        }
+
+        private int room() {
+            return current.remaining() - (chunked ? CHUNK_TRAILER : 0);
+        }
+
+        private void push() {
+            if (chunked) {
+                endChunk();
+            }
+            send();
+            current = server.acquireBuffer();
+            if (chunked) {
+                beginChunk();
+            }
+        }
+
+        private void send() {
+            if (current.position() == 0) {
+                server.releaseBuffer(current);
+            } else {
+                connection.send(current.flip());
+            }
+        }
+
+        private void beginChunk() {
+            if (current.remaining() < CHUNK_HEADER + CHUNK_TRAILER + 64) {
+                send();
+                current = server.acquireBuffer();
+            }
+            chunkStart = current.position();
+            current.position(chunkStart + CHUNK_HEADER);
+        }
+
+        // Fills in the open chunk's header, or drops the chunk if it is empty
+        // since an empty chunk would end the body
+        private void endChunk() {
+            int size = current.position() - chunkStart - CHUNK_HEADER;
+            if (size == 0) {
+                current.position(chunkStart);
+                return;
+            }
+            current.put(chunkStart, HEX[size >> 12 & 0xF])
+                .put(chunkStart + 1, HEX[size >> 8 & 0xF])
+                .put(chunkStart + 2, HEX[size >> 4 & 0xF])
+                .put(chunkStart + 3, HEX[size & 0xF])
+                .put(chunkStart + 4, (byte) '\r')
+                .put(chunkStart + 5, (byte) '\n');
+            current.put((byte) '\r').put((byte) '\n');
+        }
+
+        private void putAscii(String text) throws IOException {
+            if (text.length() > current.remaining()) {
+                throw new IOException("Response headers too large");
+            }
+            for (int i = 0; i < text.length(); i++) {
+                current.put((byte) text.charAt(i));
+            }
+        }
+    }
+
+    private static String reason(int statusCode) {
+        return switch (statusCode) {
+            case 200 -> "OK";
+            case 204 -> "No Content";
+            case 304 -> "Not Modified";
+            case 400 -> "Bad Request";
+            case 401 -> "Unauthorized";
+            case 403 -> "Forbidden";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 409 -> "Conflict";
+            case 413 -> "Content Too Large";
+            case 429 -> "Too Many Requests";
+            case 500 -> "Internal Server Error";
+            default -> "";
+        };
+    }
+}
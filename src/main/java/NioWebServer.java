@@ -0,0 +1,619 @@
+package main.java;
+
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// WebServer on java.nio. One daemon selector thread accepts connections,
+// reads requests and writes responses without ever blocking; only the
+// handlers run on the executor. Connections stay open between requests
+// (HTTP/1.1 keep-alive) and serve one request at a time, so a pipelined
+// request waits in the read buffer until the previous response is written.
+//
+// Reads and responses go through direct buffers from a shared pool. An idle
+// connection holds no buffer, and a busy one keeps reusing the same few. A
+// request's headers must fit in one buffer (16 KB). Its body must come with
+// a Content-Length and is capped at maxBodyBytes.
+//
+// A connection must deliver each whole request within
+// atm.web.readTimeoutSeconds (default 30) of starting to wait for it, or it
+// is closed. That covers idle keep-alive connections as well as clients that
+// send a request a byte at a time.
+public class NioWebServer implements WebServer {
+    static final int BUFFER_SIZE = 16 * 1024;
+    // Idle buffers kept for reuse, 16 MB at most
+    private static final int MAX_POOLED_BUFFERS = 1024;
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EMPTY_BODY = new byte[0];
+    // Connection states
+    private static final int READING_HEAD = 0;
+    private static final int READING_BODY = 1;
+    private static final int HANDLING = 2;
+    private static final long DEFAULT_READ_TIMEOUT_SECONDS = 30;
+    private static final long REAP_INTERVAL_MILLIS = 1000;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService executor;
+    private final int maxBodyBytes;
+    private final long readTimeoutNanos;
+    private final Map<String, Context> contexts = new ConcurrentHashMap<>();
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+    // Connections a handler thread has queued response bytes for, waiting
+    // for the selector thread to start writing them
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Thread selectorThread;
+    private volatile boolean running;
+
+    public NioWebServer(int port, int backlog, ExecutorService executor, int maxBodyBytes) throws IOException {
+        this.executor = executor;
+        this.maxBodyBytes = maxBodyBytes;
+        this.readTimeoutNanos = TimeUnit.SECONDS.toNanos(
+            Long.getLong("atm.web.readTimeoutSeconds", DEFAULT_READ_TIMEOUT_SECONDS));
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), backlog);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.selectorThread = new Thread(this::run, "nio-web-server");
+        selectorThread.setDaemon(true);
+    }
+
+    @Override
+    public void createContext(String path, HttpHandler handler) {
+        contexts.put(path, new Context(path, handler));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        selectorThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdown();
+    }
+
+    // The port actually bound, for servers started on port 0
+    int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        if (pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            buffers.offer(buffer);
+        } else {
+            pooledBuffers.decrementAndGet();
+        }
+    }
+
+    private void run() {
+        long nextReap = System.nanoTime();
+        while (running) {
+            try {
+                selector.select(REAP_INTERVAL_MILLIS);
+                long now = System.nanoTime();
+                if (now - nextReap >= 0) {
+                    reapExpired(now);
+                    nextReap = now + TimeUnit.MILLISECONDS.toNanos(REAP_INTERVAL_MILLIS);
+                }
+                Connection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    pending.enableWrite();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept();
+                    } else if (key.isValid()) {
+                        serve(key, (Connection) key.attachment());
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Web server error: " + e.getMessage());
+                }
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection connection) {
+                connection.close();
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close web server: " + e.getMessage());
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+        }
+    }
+
+    // Any failure closes this one connection; the selector thread carries on
+    // with the rest
+    private void serve(SelectionKey key, Connection connection) {
+        try {
+            if (key.isWritable()) {
+                connection.write();
+            }
+            if (key.isValid() && key.isReadable()) {
+                connection.read();
+            }
+        } catch (IOException | CancelledKeyException e) {
+            connection.close();
+        } catch (RuntimeException e) {
+            System.err.println("Web connection from " + connection.getRemoteAddress() + " failed: " + e);
+            connection.close();
+        }
+    }
+
+    // Closes connections that have not delivered their request in time
+    private void reapExpired(long now) {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection connection && connection.isExpired(now)) {
+                connection.close();
+            }
+        }
+    }
+
+    // Same matching as com.sun.net.httpserver: the longest context path that
+    // the request path starts with
+    private Context findContext(String path) {
+        Context best = null;
+        for (Context context : contexts.values()) {
+            if (path.startsWith(context.getPath())
+                    && (best == null || context.getPath().length() > best.getPath().length())) {
+                best = context;
+            }
+        }
+        return best;
+    }
+
+    private void handle(NioHttpExchange exchange, Context context) {
+        try {
+            if (context == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                context.getHandler().handle(exchange);
+            }
+        } catch (Exception e) {
+            System.err.println("Web handler failed for " + exchange.getRequestURI() + ": " + e);
+            exchange.abort();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // One client socket. Reading and parsing happen on the selector thread;
+    // send and finish are called by the handler's thread.
+    class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final InetSocketAddress remoteAddress;
+        private final InetSocketAddress localAddress;
+        // Bytes received and not yet consumed, in write mode. Null while idle.
+        private ByteBuffer readBuffer;
+        private int state = READING_HEAD;
+        // The request being received
+        private String method;
+        private URI uri;
+        private String protocol;
+        private Headers requestHeaders;
+        private byte[] body;
+        private int bodyFilled;
+        private boolean keepAlive;
+        private boolean expectContinue;
+        // System.nanoTime() by which the next request must be fully read;
+        // not checked while a handler owns the connection
+        private long deadline;
+        // Response bytes waiting to be written, already flipped
+        private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+        private volatile boolean responseDone;
+        private volatile boolean closeAfterResponse;
+
+        Connection(SocketChannel channel, SelectionKey key) throws IOException {
+            this.channel = channel;
+            this.key = key;
+            this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+            this.localAddress = (InetSocketAddress) channel.getLocalAddress();
+            this.deadline = System.nanoTime() + readTimeoutNanos;
+        }
+
+        InetSocketAddress getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        InetSocketAddress getLocalAddress() {
+            return localAddress;
+        }
+
+        boolean isKeepAlive() {
+            return keepAlive;
+        }
+
+        private boolean isExpired(long now) {
+            return state != HANDLING && now - deadline >= 0;
+        }
+
+        // Queues a filled, flipped buffer for writing. The connection
+        // releases it to the pool once written.
+        void send(ByteBuffer buffer) {
+            outbound.add(buffer);
+            requestWrite();
+        }
+
+        // Marks the response complete once everything sent so far is written
+        void finish(boolean close) {
+            if (close) {
+                closeAfterResponse = true;
+            }
+            responseDone = true;
+            requestWrite();
+        }
+
+        private void requestWrite() {
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        private void enableWrite() {
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void read() throws IOException {
+            if (readBuffer == null) {
+                readBuffer = acquireBuffer();
+            }
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+            process();
+        }
+
+        private void write() throws IOException {
+            while (true) {
+                // Read before looking at the queue: once the handler has
+                // finished, everything it queued is already visible
+                boolean done = responseDone;
+                ByteBuffer buffer = outbound.peek();
+                if (buffer == null) {
+                    if (done) {
+                        complete();
+                    } else {
+                        key.interestOps(state == HANDLING ? 0 : SelectionKey.OP_READ);
+                    }
+                    return;
+                }
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return;
+                }
+                outbound.poll();
+                releaseBuffer(buffer);
+            }
+        }
+
+        // The response is fully written; get ready for the next request
+        private void complete() throws IOException {
+            if (closeAfterResponse) {
+                close();
+                return;
+            }
+            responseDone = false;
+            state = READING_HEAD;
+            deadline = System.nanoTime() + readTimeoutNanos;
+            key.interestOps(SelectionKey.OP_READ);
+            if (readBuffer != null) {
+                // A pipelined request may already be waiting
+                process();
+            }
+        }
+
+        private void process() throws IOException {
+            if (state == READING_HEAD) {
+                int headEnd = headEnd();
+                if (headEnd < 0) {
+                    if (!readBuffer.hasRemaining()) {
+                        reject(431, "Request Header Fields Too Large");
+                    } else if (readBuffer.position() == 0) {
+                        releaseBuffer(readBuffer);
+                        readBuffer = null;
+                    }
+                    return;
+                }
+                if (!parseHead(headEnd)) {
+                    return;
+                }
+                consume(headEnd);
+                state = READING_BODY;
+            }
+            if (state == READING_BODY) {
+                int available = Math.min(readBuffer.position(), body.length - bodyFilled);
+                readBuffer.flip();
+                readBuffer.get(body, bodyFilled, available);
+                readBuffer.compact();
+                bodyFilled += available;
+                if (bodyFilled < body.length) {
+                    if (expectContinue) {
+                        expectContinue = false;
+                        ByteBuffer buffer = acquireBuffer();
+                        buffer.put(CONTINUE).flip();
+                        outbound.add(buffer);
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                    return;
+                }
+                dispatch();
+            }
+        }
+
+        // Offset just past the blank line ending the request head, or -1
+        private int headEnd() {
+            int limit = readBuffer.position();
+            for (int i = 3; i < limit; i++) {
+                if (readBuffer.get(i) == '\n' && readBuffer.get(i - 1) == '\r'
+                        && readBuffer.get(i - 2) == '\n' && readBuffer.get(i - 3) == '\r') {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        // Parses the request line and headers, or sends an error response
+        // and returns false
+        private boolean parseHead(int headEnd) throws IOException {
+            byte[] head = new byte[headEnd - 4];
+            readBuffer.get(0, head);
+            String[] lines = new String(head, StandardCharsets.ISO_8859_1).split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length != 3 || !isToken(requestLine[0]) || !requestLine[2].startsWith("HTTP/1.")) {
+                reject(400, "Bad Request");
+                return false;
+            }
+            method = requestLine[0];
+            protocol = requestLine[2];
+            try {
+                uri = new URI(requestLine[1]);
+            } catch (URISyntaxException e) {
+                reject(400, "Bad Request");
+                return false;
+            }
+            requestHeaders = new Headers();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                String name = colon > 0 ? lines[i].substring(0, colon) : "";
+                String value = lines[i].substring(colon + 1).trim();
+                if (!isToken(name) || !isFieldValue(value)) {
+                    reject(400, "Bad Request");
+                    return false;
+                }
+                requestHeaders.add(name, value);
+            }
+
+            if (requestHeaders.containsKey("Transfer-Encoding")) {
+                reject(411, "Length Required");
+                return false;
+            }
+            long length = 0;
+            String contentLength = requestHeaders.getFirst("Content-Length");
+            if (contentLength != null) {
+                try {
+                    length = Long.parseLong(contentLength);
+                } catch (NumberFormatException e) {
+                    length = -1;
+                }
+                if (length < 0) {
+                    reject(400, "Bad Request");
+                    return false;
+                }
+                if (length > maxBodyBytes) {
+                    reject(413, "Content Too Large");
+                    return false;
+                }
+            }
+            body = length == 0 ? EMPTY_BODY : new byte[(int) length];
+            bodyFilled = 0;
+
+            String connection = requestHeaders.getFirst("Connection");
+            keepAlive = protocol.equals("HTTP/1.1")
+                ? !"close".equalsIgnoreCase(connection)
+                : "keep-alive".equalsIgnoreCase(connection);
+            expectContinue = "100-continue".equalsIgnoreCase(requestHeaders.getFirst("Expect"));
+            return true;
+        }
+
+        // RFC 9110 token: the characters allowed in a method or header name
+        private static boolean isToken(String text) {
+            if (text.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                        || "!#$%&'*+-.^_`|~".indexOf(c) >= 0)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // No control characters other than tab, in particular no bare CR or LF
+        private static boolean isFieldValue(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c < ' ' && c != '\t' || c == 0x7F) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void consume(int count) {
+            readBuffer.flip();
+            readBuffer.position(count);
+            readBuffer.compact();
+        }
+
+        private void dispatch() {
+            state = HANDLING;
+            key.interestOps(0);
+            Context context = findContext(uri.getPath() != null ? uri.getPath() : "/");
+            NioHttpExchange exchange = new NioHttpExchange(NioWebServer.this, this, context,
+                method, uri, protocol, requestHeaders, body);
+            requestHeaders = null;
+            body = null;
+            try {
+                executor.execute(() -> handle(exchange, context));
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+        }
+
+        // Answers a request that cannot be handled and closes the connection
+        private void reject(int statusCode, String reason) {
+            state = HANDLING;
+            ByteBuffer buffer = acquireBuffer();
+            buffer.put(("HTTP/1.1 " + statusCode + " " + reason
+                + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII)).flip();
+            outbound.add(buffer);
+            closeAfterResponse = true;
+            responseDone = true;
+            key.interestOps(SelectionKey.OP_WRITE);
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+            if (readBuffer != null) {
+                releaseBuffer(readBuffer);
+                readBuffer = null;
+            }
+            ByteBuffer buffer;
+            while ((buffer = outbound.poll()) != null) {
+                releaseBuffer(buffer);
+            }
+        }
+    }
+
+    // Routing entry handed to handlers through HttpExchange.getHttpContext().
+    // There is no HttpServer behind it, and filters and authenticators are
+    // not applied.
+    static class Context extends HttpContext {
+        private final String path;
+        private HttpHandler handler;
+        private final Map<String, Object> attributes = new HashMap<>();
+        private final List<Filter> filters = new ArrayList<>();
+        private Authenticator authenticator;
+
+        Context(String path, HttpHandler handler) {
+            this.path = path;
+            this.handler = handler;
+        }
+
+        @Override
+        public HttpHandler getHandler() {
+            return handler;
+        }
+
+        @Override
+        public void setHandler(HttpHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public HttpServer getServer() {
+            return null;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public List<Filter> getFilters() {
+            return filters;
+        }
+
+        @Override
+        public Authenticator setAuthenticator(Authenticator authenticator) {
+            Authenticator previous = this.authenticator;
+            this.authenticator = authenticator;
+            return previous;
+        }
+
+        @Override
+        public Authenticator getAuthenticator() {
+            return authenticator;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package main.java;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.GZIPOutputStream;
+
+// A fixed response body encoded once up front, together with its gzip
+// variant and an ETag for each. Serving it copies bytes straight to the
+// exchange, and a client that already holds the current version gets a 304
+// with no body.
+public class StaticPage {
+    // Clients may keep the page but must revalidate it before reuse
+    private static final String CACHE_CONTROL = "no-cache";
+
+    private final String contentType;
+    private final byte[] body;
+    private final String etag;
+    // Null when compressing would not make the page smaller
+    private final byte[] gzipBody;
+    private final String gzipEtag;
+
+    public StaticPage(String contentType, String content) {
+        this.contentType = contentType;
+        this.body = content.getBytes(StandardCharsets.UTF_8);
+        String hash = hash(body);
+        this.etag = "\"" + hash + "\"";
+        byte[] compressed = gzip(body);
+        if (compressed.length < body.length) {
+            this.gzipBody = compressed;
+            this.gzipEtag = "\"" + hash + "-gzip\"";
+        } else {
+            this.gzipBody = null;
+            this.gzipEtag = null;
+        }
+    }
+
+    public void send(HttpExchange exchange) throws IOException {
+        Headers requestHeaders = exchange.getRequestHeaders();
+        boolean gzip = gzipBody != null && acceptsGzip(requestHeaders.getFirst("Accept-Encoding"));
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", contentType);
+        headers.set("Cache-Control", CACHE_CONTROL);
+        headers.set("ETag", gzip ? gzipEtag : etag);
+        if (gzipBody != null) {
+            headers.set("Vary", "Accept-Encoding");
+        }
+
+        if (matches(requestHeaders.getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        byte[] response = gzip ? gzipBody : body;
+        if (gzip) {
+            headers.set("Content-Encoding", "gzip");
+        }
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            headers.set("Content-Length", String.valueOf(response.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(response);
+        }
+    }
+
+    // True if any tag in the If-None-Match list names either encoding of
+    // this page. Weak comparison, as RFC 9110 requires for If-None-Match.
+    private boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim().replace(" ", "");
+                    if (parameter.matches("q=0(\\.0{0,3})?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -5,12 +5,12 @@ import java.time.format.DateTimeFormatter;
 
 public class Transaction {
     private String type;
-    private double amount;
-    private double balanceAfter;
+    private Money amount;
+    private Money balanceAfter;
     private LocalDateTime timestamp;
     private String description;
 
-    public Transaction(String type, double amount, double balanceAfter, String description) {
+    public Transaction(String type, Money amount, Money balanceAfter, String description) {
         this.type = type;
         this.amount = amount;
         this.balanceAfter = balanceAfter;
@@ -18,15 +18,23 @@ public class Transaction {
         this.description = description;
     }
 
+    public Transaction(String type, Money amount, Money balanceAfter, LocalDateTime timestamp, String description) {
+        this.type = type;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.timestamp = timestamp;
+        this.description = description;
+    }
+
     public String getType() {
         return type;
     }
 
-    public double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public double getBalanceAfter() {
+    public Money getBalanceAfter() {
         return balanceAfter;
     }
 
@@ -45,11 +53,11 @@ public class Transaction {
 
     @Override
     public String toString() {
-        return String.format("%s | %s | ₱%.2f | Balance: ₱%.2f | %s",
+        return String.format("%s | %s | %s | Balance: %s | %s",
             getFormattedTimestamp(),
             type,
-            amount,
-            balanceAfter,
+            amount.toDisplayString(),
+            balanceAfter.toDisplayString(),
             description
         );
     }
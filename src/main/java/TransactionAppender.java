@@ -0,0 +1,322 @@
+package main.java;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Single writer for transactions.txt. Callers enqueue records and get a future
+// back; the appender thread drains the queue in batches, writes each batch
+// with one channel write and one fsync, then completes the batch's futures.
+// A batch is written as soon as it holds flushCount records or flushIntervalMs
+// has passed since its first record arrived.
+// The log is rolled into a sealed segment when a batch starts a new day or
+// the log has reached segmentMaxBytes.
+public class TransactionAppender {
+    private static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    private static final int DEFAULT_FLUSH_COUNT = 256;
+    private static final long DEFAULT_SEGMENT_MAX_BYTES = 16L * 1024 * 1024;
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 20;
+    private static final long IDLE_POLL_MS = 100;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final BlockingQueue<PendingRecord> queue;
+    private final int flushCount;
+    private final long flushIntervalMs;
+    private final long segmentMaxBytes;
+    private final Path logPath;
+    private final TransactionIndex index;
+    private final TransactionSegmentCatalog catalog;
+    private final FileChannel channel;
+    private Thread writerThread;
+    private final List<PendingRecord> batch = new ArrayList<>();
+    private final StringBuilder line = new StringBuilder(256);
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private String[] batchAccounts = new String[DEFAULT_FLUSH_COUNT];
+    private long[] batchOffsets = new long[DEFAULT_FLUSH_COUNT];
+    private volatile boolean running = true;
+    private long activeFirstTimestamp = -1;
+
+    private static class PendingRecord {
+        final String accountNumber;
+        final String type;
+        final Money amount;
+        final long timestamp;
+        final String description;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingRecord(String accountNumber, String type, Money amount, long timestamp, String description) {
+            this.accountNumber = accountNumber;
+            this.type = type;
+            this.amount = amount;
+            this.timestamp = timestamp;
+            this.description = description;
+        }
+
+        boolean isFlushMarker() {
+            return accountNumber == null;
+        }
+    }
+
+    private TransactionAppender(String logPath, String indexPath, String segmentDirectory) throws IOException {
+        this.queue = new ArrayBlockingQueue<>(Integer.getInteger("atm.transactions.queueCapacity", DEFAULT_QUEUE_CAPACITY));
+        this.flushCount = Integer.getInteger("atm.transactions.flushCount", DEFAULT_FLUSH_COUNT);
+        this.flushIntervalMs = Long.getLong("atm.transactions.flushIntervalMs", DEFAULT_FLUSH_INTERVAL_MS);
+        this.segmentMaxBytes = Long.getLong("atm.transactions.segmentMaxBytes", DEFAULT_SEGMENT_MAX_BYTES);
+        this.logPath = Paths.get(logPath);
+        this.catalog = new TransactionSegmentCatalog(segmentDirectory);
+        this.index = new TransactionIndex(logPath, indexPath);
+        this.channel = FileChannel.open(this.logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        activeFirstTimestamp = readFirstTimestamp();
+
+        TransactionSegmentCatalog.SegmentInfo last = catalog.getLastSegment();
+        if (last != null && channel.size() == last.getSourceLength() && activeFirstTimestamp == last.getMinTimestamp()) {
+            // A previous roll sealed the log but stopped before truncating it
+            truncateActive();
+        }
+    }
+
+    // Opens the log and starts the writer thread once the appender is fully
+    // built, so the thread and shutdown hook never see it half-built
+    public static TransactionAppender open(String logPath, String indexPath, String segmentDirectory) throws IOException {
+        TransactionAppender appender = new TransactionAppender(logPath, indexPath, segmentDirectory);
+        appender.start();
+        return appender;
+    }
+
+    private void start() {
+        writerThread = new Thread(this::run, "transaction-appender");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    public TransactionIndex getIndex() {
+        return index;
+    }
+
+    public TransactionSegmentCatalog getCatalog() {
+        return catalog;
+    }
+
+    public CompletableFuture<Void> append(String accountNumber, String type, Money amount, long timestamp, String description) {
+        return enqueue(new PendingRecord(accountNumber, type, amount, timestamp, description));
+    }
+
+    // Completes once every record enqueued before this call is on disk
+    public CompletableFuture<Void> flush() {
+        return enqueue(new PendingRecord(null, null, null, 0, null));
+    }
+
+    public void close() {
+        if (!running) {
+            return;
+        }
+        CompletableFuture<Void> drained = flush();
+        running = false;
+        try {
+            drained.join();
+            writerThread.join();
+            channel.close();
+            index.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Error closing transaction log: " + e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(PendingRecord record) {
+        if (!running) {
+            record.future.completeExceptionally(new IllegalStateException("Transaction appender is closed"));
+            return record.future;
+        }
+        try {
+            queue.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            record.future.completeExceptionally(e);
+        }
+        return record.future;
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingRecord first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < flushCount && !first.isFlushMarker()) {
+                    if (queue.drainTo(batch, flushCount - batch.size()) > 0) {
+                        if (batch.get(batch.size() - 1).isFlushMarker()) {
+                            break;
+                        }
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    if (next.isFlushMarker()) {
+                        break;
+                    }
+                }
+                writeBatch();
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) {
+                    writeBatch();
+                }
+            } catch (RuntimeException e) {
+                // This is the only writer; it must outlive a bad batch or
+                // every later future would hang
+                failBatch(e);
+            }
+        }
+    }
+
+    private void writeBatch() {
+        long start = -1;
+        try {
+            for (PendingRecord record : batch) {
+                if (!record.isFlushMarker()) {
+                    maybeRoll(record.timestamp);
+                    break;
+                }
+            }
+            start = channel.position();
+            long offset = start;
+            int records = 0;
+            if (batchAccounts.length < batch.size()) {
+                batchAccounts = new String[batch.size()];
+                batchOffsets = new long[batch.size()];
+            }
+            buffer.clear();
+            for (PendingRecord record : batch) {
+                if (record.isFlushMarker()) {
+                    continue;
+                }
+                line.setLength(0);
+                line.append(record.accountNumber).append(',').append(record.type).append(',');
+                record.amount.appendTo(line).append(',').append(record.timestamp).append(',')
+                    .append(record.description).append(LINE_SEPARATOR);
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < bytes.length) {
+                    drainBuffer();
+                    if (buffer.capacity() < bytes.length) {
+                        buffer = ByteBuffer.allocate(bytes.length);
+                    }
+                }
+                buffer.put(bytes);
+                if (activeFirstTimestamp < 0) {
+                    activeFirstTimestamp = record.timestamp;
+                }
+                batchAccounts[records] = record.accountNumber;
+                batchOffsets[records] = offset;
+                offset += bytes.length;
+                records++;
+            }
+            if (records > 0) {
+                drainBuffer();
+                channel.force(false);
+                index.add(batchAccounts, batchOffsets, records);
+            }
+            for (PendingRecord record : batch) {
+                record.future.complete(null);
+            }
+        } catch (IOException | RuntimeException e) {
+            discardFrom(start);
+            failBatch(e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    // Every record of a failed batch is reported as failed, so none of it
+    // may stay in the log. If the log cannot be cut back, the index takes in
+    // whatever did reach it, as it would on the next open.
+    private void discardFrom(long start) {
+        if (start < 0) {
+            return;
+        }
+        try {
+            channel.truncate(start);
+            channel.position(start);
+        } catch (IOException e) {
+            System.err.println("Error discarding failed transaction batch: " + e.getMessage());
+            index.refresh();
+        }
+    }
+
+    private void failBatch(Exception e) {
+        System.err.println("Error writing transaction batch: " + e);
+        for (PendingRecord record : batch) {
+            record.future.completeExceptionally(e);
+        }
+        batch.clear();
+    }
+
+    private void maybeRoll(long batchTimestamp) throws IOException {
+        if (activeFirstTimestamp < 0) {
+            return;
+        }
+        if (channel.size() < segmentMaxBytes && dayOf(batchTimestamp).equals(dayOf(activeFirstTimestamp))) {
+            return;
+        }
+        // Readers hold this lock while they go through the active log
+        synchronized (this) {
+            catalog.seal(logPath);
+            truncateActive();
+        }
+    }
+
+    private void truncateActive() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(false);
+        index.reset();
+        activeFirstTimestamp = -1;
+    }
+
+    private long readFirstTimestamp() {
+        try {
+            return LegacyFormatParser.firstTimestamp(logPath);
+        } catch (IOException e) {
+            System.err.println("Error reading transaction log: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    private static LocalDate dayOf(long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private void drainBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,587 @@
+package main.java;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Applies balance and PIN changes on a fixed set of shard threads. Every
+// account belongs to exactly one shard, so its operations run one at a time
+// in submission order without any locking. Callers put a command into the
+// shard's bounded ring buffer and get a future back. A shard drains its ring
+// in batches, applies the batch, saves each account it touched once, and only
+// then completes the batch's futures.
+//
+// A transfer is applied as a debit on the sender's shard followed by a credit
+// on the recipient's shard, so it never needs both accounts at once. A batch
+// transfer debits its source once, then credits the recipients on all their
+// shards in parallel.
+public class TransactionEngine {
+    private static final int DEFAULT_RING_SIZE = 1024;
+    private static final int MAX_BATCH = 256;
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AccountStore store;
+    private final Shard[] shards;
+    private final IdempotencyCache requests = new IdempotencyCache();
+    private volatile boolean running = true;
+    // Set by close() once the shards have exited and their rings were
+    // emptied; guarded by this
+    private boolean drained;
+    // The batch transfer in flight: its accounts, which shards do not save
+    // on their own meanwhile, and the commands on them waiting for the
+    // batch's write before they complete. Guarded by batchLock.
+    private final Object batchLock = new Object();
+    private final Set<Account> batchAccounts = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Command> heldBack = new ArrayList<>();
+    private CompletableFuture<?> lastBatch = CompletableFuture.completedFuture(null);
+    private volatile boolean batchActive;
+
+    private static class Command {
+        final Account account;
+        final Runnable action;
+        final CompletableFuture<Void> future;
+        // Submitted to the next account's shard once this one succeeds
+        Command next;
+        // Submitted back to the first account's shard if this forwarded half
+        // fails, carrying the failure to complete the future with once it has run
+        Command undo;
+        RuntimeException failure;
+        // Saved by whoever submitted it rather than at the end of the shard's batch
+        boolean deferSave;
+        // Handed on by another shard after the first half of its operation
+        // was applied, so it must run even while the engine is closing
+        boolean forwarded;
+
+        Command(Account account, Runnable action, CompletableFuture<Void> future) {
+            this.account = account;
+            this.action = action;
+            this.future = future;
+        }
+    }
+
+    public TransactionEngine(AccountStore store) {
+        this.store = store;
+        int shardCount = Math.max(1, Integer.getInteger("atm.engine.shards", Runtime.getRuntime().availableProcessors()));
+        int ringSize = Integer.getInteger("atm.engine.ringSize", DEFAULT_RING_SIZE);
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, ringSize);
+        }
+    }
+
+    public CompletableFuture<Void> deposit(Account account, Money amount) {
+        return deposit(account, amount, TransactionLimits.Channel.ATM);
+    }
+
+    public CompletableFuture<Void> deposit(Account account, Money amount, TransactionLimits.Channel channel) {
+        return submit(account, () -> account.deposit(amount, channel));
+    }
+
+    public CompletableFuture<Void> withdraw(Account account, Money amount) {
+        return withdraw(account, amount, TransactionLimits.Channel.ATM);
+    }
+
+    public CompletableFuture<Void> withdraw(Account account, Money amount, TransactionLimits.Channel channel) {
+        return submit(account, () -> account.withdraw(amount, channel));
+    }
+
+    // Request ID forms of the operations above. A request ID seen recently
+    // from the same account is answered with the earlier result instead of
+    // being applied again; a null request ID skips the check. Request IDs are
+    // scoped by account, so one client cannot replay or block another's.
+    public CompletableFuture<Void> deposit(String requestId, Account account, Money amount, TransactionLimits.Channel channel) {
+        return once(account, requestId, "DEPOSIT," + account.getAccountNumber() + "," + amount + "," + channel,
+            () -> deposit(account, amount, channel));
+    }
+
+    public CompletableFuture<Void> withdraw(String requestId, Account account, Money amount, TransactionLimits.Channel channel) {
+        return once(account, requestId, "WITHDRAWAL," + account.getAccountNumber() + "," + amount + "," + channel,
+            () -> withdraw(account, amount, channel));
+    }
+
+    public CompletableFuture<Void> transfer(String requestId, Account sender, Money amount, Account recipient,
+                                            String description, TransactionLimits.Channel channel) {
+        return once(sender, requestId, "TRANSFER," + sender.getAccountNumber() + "," + recipient.getAccountNumber() + "," + amount + "," + channel,
+            () -> transfer(sender, amount, recipient, description, channel));
+    }
+
+    // Pays every item of the batch out of source. Items that cannot be paid
+    // are rejected up front without holding up the rest. The valid ones are
+    // debited from source as one amount and credited on their recipients'
+    // shards in parallel. Credits that fail are refunded to source. Every
+    // account in the batch is then written with one AccountStore.saveAll, so
+    // the store never holds the debit without its credits. Batches run one at
+    // a time. Completes with the batch, its items carrying their final status.
+    public CompletableFuture<BatchTransfer> transferBatch(Account source, BatchTransfer batch, AccountRegistry accounts,
+                                                         String description, TransactionLimits.Channel channel) {
+        synchronized (batchLock) {
+            CompletableFuture<BatchTransfer> result = lastBatch.handle((ignored, failure) -> null)
+                .thenComposeAsync(ignored -> runBatch(source, batch, accounts, description, channel));
+            lastBatch = result;
+            return result;
+        }
+    }
+
+    private CompletableFuture<BatchTransfer> runBatch(Account source, BatchTransfer batch, AccountRegistry accounts,
+                                                      String description, TransactionLimits.Channel channel) {
+        List<BatchTransfer.Item> valid = new ArrayList<>();
+        Set<Account> members = Collections.newSetFromMap(new IdentityHashMap<>());
+        members.add(source);
+        Money total = Money.ZERO;
+        for (BatchTransfer.Item item : batch.getItems()) {
+            Account recipient = accounts.get(item.getRecipientAccountNumber());
+            if (recipient == null) {
+                item.reject("Recipient account not found");
+            } else if (recipient == source) {
+                item.reject("Cannot transfer to the same account");
+            } else if (recipient.isDeleted()) {
+                item.reject("Recipient account has been deleted: " + recipient.getDeletionReason());
+            } else if (!item.getAmount().isPositive()) {
+                item.reject("Transfer amount must be positive");
+            } else {
+                item.recipient = recipient;
+                valid.add(item);
+                members.add(recipient);
+                total = total.plus(item.getAmount());
+            }
+        }
+        if (valid.isEmpty()) {
+            return CompletableFuture.completedFuture(batch);
+        }
+        Money debitTotal = total;
+        // Hold back other saves of the batch's accounts from the moment the
+        // debit is applied until finishBatch has written them all
+        Command debit = new Command(source, () -> {
+            source.batchOut(debitTotal, valid.size(), description, channel);
+            synchronized (batchLock) {
+                batchAccounts.addAll(members);
+                batchActive = true;
+            }
+        }, new CompletableFuture<>());
+        debit.deferSave = true;
+        submit(debit);
+        return debit.future
+            .handle((ignored, failure) -> failure)
+            .thenComposeAsync(failure -> {
+                if (failure != null) {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    for (BatchTransfer.Item item : valid) {
+                        item.fail(cause.getMessage());
+                    }
+                    return CompletableFuture.completedFuture(batch);
+                }
+                return creditBatch(source, valid, description).thenApply(ignored -> batch);
+            });
+    }
+
+    // Runs once the debit has been applied, so every step is forwarded and
+    // still runs while the engine is closing
+    private CompletableFuture<Void> creditBatch(Account source, List<BatchTransfer.Item> items, String description) {
+        Map<Shard, List<BatchTransfer.Item>> byShard = new IdentityHashMap<>();
+        for (BatchTransfer.Item item : items) {
+            byShard.computeIfAbsent(shardOf(item.recipient), shard -> new ArrayList<>()).add(item);
+        }
+        List<CompletableFuture<Void>> credits = new ArrayList<>(byShard.size());
+        for (List<BatchTransfer.Item> shardItems : byShard.values()) {
+            // Every recipient in the list lives on this shard
+            credits.add(submitForwarded(shardItems.get(0).recipient, () -> {
+                for (BatchTransfer.Item item : shardItems) {
+                    try {
+                        item.recipient.transferIn(item.getAmount(), source, description);
+                        item.complete();
+                    } catch (RuntimeException e) {
+                        item.fail(e.getMessage());
+                    }
+                }
+            }));
+        }
+        return CompletableFuture.allOf(credits.toArray(new CompletableFuture<?>[0]))
+            .thenComposeAsync(ignored -> submitForwarded(source, () -> {
+                Money refund = Money.ZERO;
+                for (BatchTransfer.Item item : items) {
+                    if (item.getStatus() != BatchTransfer.Status.COMPLETED) {
+                        refund = refund.plus(item.getAmount());
+                    }
+                }
+                try {
+                    if (!refund.isZero()) {
+                        source.refund(refund, "Batch transfer refund: " + description);
+                    }
+                } finally {
+                    finishBatch(source);
+                }
+            }));
+    }
+
+    // Runs on source's shard. Writes every account of the batch at once and
+    // hands the commands held back meanwhile to this shard to complete.
+    private void finishBatch(Account source) {
+        List<Command> released;
+        synchronized (batchLock) {
+            try {
+                store.saveAll(batchAccounts);
+            } catch (RuntimeException e) {
+                System.err.println("Error saving batch transfer accounts: " + e.getMessage());
+            }
+            batchAccounts.clear();
+            batchActive = false;
+            released = new ArrayList<>(heldBack);
+            heldBack.clear();
+        }
+        shardOf(source).released.addAll(released);
+    }
+
+    public CompletableFuture<Void> changePin(Account account, String newPin) {
+        return submit(account, () -> account.setPin(newPin));
+    }
+
+    public CompletableFuture<Void> changeAccountHolder(Account account, String accountHolder) {
+        return submit(account, () -> account.setAccountHolder(accountHolder));
+    }
+
+    public CompletableFuture<Void> transfer(Account sender, Money amount, Account recipient, String description) {
+        return transfer(sender, amount, recipient, description, TransactionLimits.Channel.ATM);
+    }
+
+    public CompletableFuture<Void> transfer(Account sender, Money amount, Account recipient, String description,
+                                            TransactionLimits.Channel channel) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Command debit = new Command(sender, () -> sender.transferOut(amount, recipient, description, channel), future);
+        debit.next = new Command(recipient, () -> recipient.transferIn(amount, sender, description), future);
+        // The recipient's balance would overflow: give the sender the money back
+        debit.next.undo = new Command(sender, () -> sender.refund(amount, "Transfer refund: " + description), future);
+        submit(debit);
+        return future;
+    }
+
+    // The exception a command failed with, without the CompletionException
+    // that dependent stages wrap it in
+    public static Throwable cause(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    // Waits for a command and rethrows its failure unwrapped, so callers can
+    // keep catching the exceptions Account throws. Blocks, so not for the
+    // Swing event thread.
+    public static void await(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Stops accepting commands and waits until every shard has drained
+    public void close() {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        drainClosed();
+    }
+
+    private CompletableFuture<Void> once(Account account, String requestId, String fingerprint,
+                                         Supplier<CompletableFuture<Void>> operation) {
+        if (requestId == null) {
+            return operation.get();
+        }
+        return requests.execute(account.getAccountNumber() + ":" + requestId, fingerprint, operation);
+    }
+
+    private CompletableFuture<Void> submit(Account account, Runnable action) {
+        Command command = new Command(account, action, new CompletableFuture<>());
+        submit(command);
+        return command.future;
+    }
+
+    // Submits a later step of an operation already under way. It is saved by
+    // the operation itself, and is accepted even while the engine is closing.
+    private CompletableFuture<Void> submitForwarded(Account account, Runnable action) {
+        Command command = new Command(account, action, new CompletableFuture<>());
+        command.deferSave = true;
+        command.forwarded = true;
+        submit(command);
+        return command.future;
+    }
+
+    private void submit(Command command) {
+        if (!running && !command.forwarded) {
+            rejectClosed(command);
+            return;
+        }
+        Shard shard = shardOf(command.account);
+        while (!shard.ring.offer(command)) {
+            if (!running && !command.forwarded) {
+                rejectClosed(command);
+                return;
+            }
+            // Ring full, wait for the shard to catch up
+            LockSupport.unpark(shard.thread);
+            Thread.yield();
+        }
+        shard.wake();
+        if (!running) {
+            // The shard may have exited before seeing the command. If close()
+            // already drained the rings nobody else will, so do it here.
+            synchronized (this) {
+                if (drained) {
+                    drainRings();
+                }
+            }
+        }
+    }
+
+    private synchronized void drainClosed() {
+        drained = true;
+        drainRings();
+    }
+
+    // Runs on the closing or a late submitting thread once every shard has
+    // exited, holding this lock so there is one consumer per ring. Forwarded
+    // halves of operations already under way are applied; anything else
+    // arrived too late and fails.
+    private void drainRings() {
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (Shard shard : shards) {
+                Command command;
+                while ((command = shard.ring.poll()) != null) {
+                    progress = true;
+                    if (command.forwarded) {
+                        shard.batch.add(command);
+                        shard.applyBatch();
+                    } else {
+                        rejectClosed(command);
+                    }
+                }
+                progress |= !shard.forwards.isEmpty();
+                shard.forwardPending();
+            }
+        }
+    }
+
+    private static void rejectClosed(Command command) {
+        command.future.completeExceptionally(new IllegalStateException("Transaction engine is closed"));
+    }
+
+    private Shard shardOf(Account account) {
+        return shards[Math.floorMod(System.identityHashCode(account), shards.length)];
+    }
+
+    private class Shard {
+        private final CommandRing ring;
+        private final Thread thread;
+        private final List<Command> batch = new ArrayList<>();
+        private final Set<Account> touched = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Follow-up commands for other shards whose rings were full
+        private final ArrayDeque<Command> forwards = new ArrayDeque<>();
+        // Commands held back during a batch transfer, handed over by
+        // finishBatch to be completed by this shard
+        private final List<Command> released = new ArrayList<>();
+        private volatile boolean sleeping;
+
+        Shard(int index, int ringSize) {
+            ring = new CommandRing(ringSize);
+            thread = new Thread(this::run, "transaction-engine-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void wake() {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void run() {
+            int idle = 0;
+            while (running || !ring.isEmpty() || !forwards.isEmpty()) {
+                forwardPending();
+                Command command = ring.poll();
+                if (command == null) {
+                    if (++idle < SPINS_BEFORE_PARK) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    sleeping = true;
+                    // Re-check after publishing sleeping so a producer cannot slip past
+                    if (ring.isEmpty()) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    sleeping = false;
+                    idle = 0;
+                    continue;
+                }
+                idle = 0;
+                do {
+                    batch.add(command);
+                } while (batch.size() < MAX_BATCH && (command = ring.poll()) != null);
+                applyBatch();
+            }
+        }
+
+        private void applyBatch() {
+            for (Command command : batch) {
+                try {
+                    command.action.run();
+                    if (!command.deferSave) {
+                        touched.add(command.account);
+                    }
+                } catch (RuntimeException e) {
+                    command.failure = e;
+                }
+            }
+            if (batchActive) {
+                holdBack();
+            }
+            // Accounts touched by the batch are written once each
+            for (Account account : touched) {
+                try {
+                    store.save(account);
+                } catch (RuntimeException e) {
+                    System.err.println("Error saving account " + account.getAccountNumber() + ": " + e.getMessage());
+                }
+            }
+            touched.clear();
+            for (Command command : batch) {
+                finish(command);
+            }
+            batch.clear();
+            for (Command command : released) {
+                finish(command);
+            }
+            released.clear();
+            forwardPending();
+        }
+
+        private void finish(Command command) {
+            if (command.failure != null && command.undo != null) {
+                command.undo.failure = command.failure;
+                command.undo.forwarded = true;
+                forwards.add(command.undo);
+            } else if (command.failure != null) {
+                command.future.completeExceptionally(command.failure);
+            } else if (command.next != null) {
+                command.next.forwarded = true;
+                forwards.add(command.next);
+            } else {
+                command.future.complete(null);
+            }
+        }
+
+        // Saving an account of the batch transfer in flight would write its
+        // debit or a credit without the rest, so those saves are skipped and
+        // the commands on those accounts wait for finishBatch instead
+        private void holdBack() {
+            synchronized (batchLock) {
+                if (!batchActive) {
+                    return;
+                }
+                touched.removeAll(batchAccounts);
+                batch.removeIf(command -> {
+                    if (command.deferSave || !batchAccounts.contains(command.account)) {
+                        return false;
+                    }
+                    heldBack.add(command);
+                    return true;
+                });
+            }
+        }
+
+        // Never blocks on another shard's ring, two shards forwarding to
+        // each other with full rings would otherwise deadlock
+        private void forwardPending() {
+            Command command;
+            while ((command = forwards.peek()) != null) {
+                Shard target = shardOf(command.account);
+                if (!target.ring.offer(command)) {
+                    return;
+                }
+                target.wake();
+                forwards.poll();
+            }
+        }
+    }
+
+    // Bounded multi-producer, single-consumer ring. Each slot carries a
+    // sequence number telling producers and the consumer whose turn it is.
+    private static class CommandRing {
+        private final Command[] slots;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+
+        CommandRing(int requestedSize) {
+            int size = Integer.highestOneBit(Math.max(2, requestedSize - 1)) << 1;
+            slots = new Command[size];
+            sequences = new AtomicLongArray(size);
+            mask = size - 1;
+            for (int i = 0; i < size; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        boolean offer(Command command) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots[index] = command;
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        // Consumer thread only
+        Command poll() {
+            long position = head;
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                return null;
+            }
+            Command command = slots[index];
+            slots[index] = null;
+            sequences.set(index, position + slots.length);
+            head = position + 1;
+            return command;
+        }
+
+        boolean isEmpty() {
+            return tail.get() == head;
+        }
+    }
+}
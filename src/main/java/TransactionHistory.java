@@ -5,20 +5,25 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import javax.swing.*;
 import java.awt.*;
 
 public class TransactionHistory {
     private static final String TRANSACTION_FILE = "transactions.txt";
+    private static final String TRANSACTION_INDEX_FILE = "transactions.idx";
+    private static final String SEGMENT_DIRECTORY = "transaction_segments";
+    private static TransactionStore store;
     
     public static class Transaction {
         String accountNumber;
         String type;
-        double amount;
+        Money amount;
         long timestamp;
         String description;
         
-        public Transaction(String accountNumber, String type, double amount, long timestamp, String description) {
+        public Transaction(String accountNumber, String type, Money amount, long timestamp, String description) {
             this.accountNumber = accountNumber;
             this.type = type;
             this.amount = amount;
@@ -29,22 +34,44 @@ public class TransactionHistory {
         @Override
         public String toString() {
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            return String.format("%s - %s: $%.2f on %s", 
+            return String.format("%s - %s: $%s on %s", 
                     type, accountNumber, amount, sdf.format(new Date(timestamp)));
         }
     }
     
-    public static void saveTransaction(String accountNumber, String type, double amount, String description) {
-        try (FileWriter fw = new FileWriter(TRANSACTION_FILE, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            out.println(String.format("%s,%s,%.2f,%d,%s", 
-                accountNumber, type, amount, System.currentTimeMillis(), description));
+    public static CompletableFuture<Void> saveTransaction(String accountNumber, String type, Money amount, String description) {
+        return saveTransaction(accountNumber, type, amount, System.currentTimeMillis(), description);
+    }
+
+    public static CompletableFuture<Void> saveTransaction(String accountNumber, String type, Money amount, long timestamp,
+                                                          String description) {
+        TransactionStore transactionStore;
+        try {
+            transactionStore = getStore();
         } catch (IOException e) {
-            JOptionPane.showMessageDialog(null, 
-                "Error saving transaction: " + e.getMessage(), 
-                "Error", JOptionPane.ERROR_MESSAGE);
+            showSaveError(e);
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Void> written = transactionStore.append(
+            accountNumber, type, amount, timestamp, description);
+        written.exceptionally(e -> {
+            showSaveError(e);
+            return null;
+        });
+        return written;
+    }
+
+    private static void showSaveError(Throwable e) {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, 
+            "Error saving transaction: " + e.getMessage(), 
+            "Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    private static synchronized TransactionStore getStore() throws IOException {
+        if (store == null) {
+            store = TransactionStore.create(TRANSACTION_FILE, TRANSACTION_INDEX_FILE, SEGMENT_DIRECTORY);
         }
+        return store;
     }
     
     public static void showTransactionHistory(String accountNumber) {
@@ -78,7 +105,7 @@ public class TransactionHistory {
             Transaction t = transactions.get(i);
             data[i][0] = sdf.format(new Date(t.timestamp));
             data[i][1] = t.type;
-            data[i][2] = String.format("₱%.2f", t.amount);
+            data[i][2] = t.amount.toDisplayString();
             data[i][3] = t.description;
         }
         
@@ -105,12 +132,13 @@ public class TransactionHistory {
         JPanel summaryPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         summaryPanel.setBackground(new Color(30, 30, 30));
         
-        double total = transactions.stream()
-            .mapToDouble(t -> t.type.startsWith("WITHDRAWAL") || t.type.equals("TRANSFER_OUT") 
-                ? -t.amount : t.amount)
-            .sum();
+        Money total = Money.ZERO;
+        for (Transaction t : transactions) {
+            total = t.type.startsWith("WITHDRAWAL") || t.type.equals("TRANSFER_OUT")
+                ? total.minus(t.amount) : total.plus(t.amount);
+        }
             
-        JLabel totalLabel = new JLabel(String.format("CURRENT BALANCE: ₱%.2f", total));
+        JLabel totalLabel = new JLabel("CURRENT BALANCE: " + total.toDisplayString());
         totalLabel.setFont(new Font("Consolas", Font.BOLD, 18));
         totalLabel.setForeground(new Color(0, 255, 0));
         summaryPanel.add(totalLabel);
@@ -136,25 +164,15 @@ public class TransactionHistory {
     }
     
     public static List<Transaction> getTransactions(String accountNumber) {
-        List<Transaction> transactions = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(TRANSACTION_FILE))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts[0].equals(accountNumber) && parts.length >= 5) {
-                    transactions.add(new Transaction(
-                            parts[0], parts[1], Double.parseDouble(parts[2]), 
-                            Long.parseLong(parts[3]), parts[4]));
-                }
-            }
-        } catch (IOException e) {
+        return getTransactions(accountNumber, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public static List<Transaction> getTransactions(String accountNumber, long from, long to) {
+        try {
+            return getStore().read(accountNumber, from, to);
+        } catch (IOException | CompletionException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-        return transactions;
-    
-
-    // Remove duplicate method since there's already a saveTransaction implementation above
-    // This empty duplicate method can be deleted
-
     }
 }
\ No newline at end of file
@@ -0,0 +1,196 @@
+package main.java;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Sidecar index for transactions.txt mapping each account number to the byte
+// offsets of its records. The index file is append-only:
+//   [unsigned short accNumLength][accNum UTF-8][long offset]
+// and is caught up against the log on open, so it survives crashes between
+// writing a transaction and writing its index entry.
+//
+// The index file stays open and is never forced. Entries are written only
+// after their records were forced to the log, so an entry lost in a crash is
+// rebuilt by the catch-up on the next open, and a torn last entry is dropped.
+public class TransactionIndex {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final File logFile;
+    private final File indexFile;
+    private final Map<String, OffsetList> offsets = new HashMap<>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private FileChannel channel;
+    private long lastIndexedOffset = -1;
+
+    private static class OffsetList {
+        long[] values = new long[8];
+        int size;
+
+        void add(long offset) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = offset;
+        }
+    }
+
+    public TransactionIndex(String logPath, String indexPath) {
+        this.logFile = new File(logPath);
+        this.indexFile = new File(indexPath);
+        load();
+    }
+
+    public synchronized long[] getOffsets(String accountNumber) {
+        OffsetList list = offsets.get(accountNumber);
+        return list == null ? new long[0] : Arrays.copyOf(list.values, list.size);
+    }
+
+    public synchronized void add(String[] accountNumbers, long[] recordOffsets, int count) {
+        try {
+            for (int i = 0; i < count; i++) {
+                writeEntry(accountNumbers[i], recordOffsets[i]);
+            }
+            flushBuffer();
+        } catch (IOException e) {
+            buffer.clear();
+            System.err.println("Error updating transaction index: " + e.getMessage());
+        }
+        for (int i = 0; i < count; i++) {
+            put(accountNumbers[i], recordOffsets[i]);
+        }
+    }
+
+    // Indexes records that reached the log without going through add, e.g.
+    // the part of a batch written before the batch failed
+    public synchronized void refresh() {
+        catchUp();
+    }
+
+    // Forgets every entry, used after the log has been rolled into a segment
+    public synchronized void reset() {
+        offsets.clear();
+        lastIndexedOffset = -1;
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            System.err.println("Error resetting transaction index: " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing transaction index: " + e.getMessage());
+        }
+    }
+
+    private void put(String accountNumber, long offset) {
+        offsets.computeIfAbsent(accountNumber, _ -> new OffsetList()).add(offset);
+        lastIndexedOffset = Math.max(lastIndexedOffset, offset);
+    }
+
+    private void load() {
+        if (indexFile.exists()) {
+            long validLength = 0;
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(indexFile)))) {
+                while (true) {
+                    int length = in.readUnsignedShort();
+                    byte[] accNum = new byte[length];
+                    in.readFully(accNum);
+                    put(new String(accNum, StandardCharsets.UTF_8), in.readLong());
+                    validLength += 2 + length + Long.BYTES;
+                }
+            } catch (EOFException e) {
+                // End of index
+            } catch (IOException e) {
+                System.err.println("Error loading transaction index: " + e.getMessage());
+            }
+            if (indexFile.length() > validLength) {
+                // Drop a partially written tail entry so new entries stay aligned
+                try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+                    raf.setLength(validLength);
+                } catch (IOException e) {
+                    System.err.println("Error repairing transaction index: " + e.getMessage());
+                }
+            }
+        }
+
+        if (lastIndexedOffset >= logFile.length()) {
+            // The log was replaced or truncated underneath us, start over
+            offsets.clear();
+            lastIndexedOffset = -1;
+            indexFile.delete();
+        }
+        try {
+            channel = FileChannel.open(indexFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open transaction index " + indexFile, e);
+        }
+        catchUp();
+    }
+
+    // Indexes every record appended to the log after the last indexed one
+    private void catchUp() {
+        if (!logFile.exists()) {
+            return;
+        }
+        long start = Math.max(lastIndexedOffset, 0);
+        long skip = lastIndexedOffset;
+        try {
+            String[] previous = new String[1];
+            byte[][] previousBytes = new byte[1][];
+            IOException[] failure = new IOException[1];
+            LegacyFormatParser.readTransactions(logFile.toPath(), start,
+                (data, offset, accountStart, accountEnd, typeStart, typeEnd, amountCents, timestamp, descriptionStart, descriptionEnd) -> {
+                    if (offset == skip || failure[0] != null) {
+                        return;
+                    }
+                    // Runs of records for the same account share one key String
+                    if (previous[0] == null || !LegacyFormatParser.matches(data, accountStart, accountEnd, previousBytes[0])) {
+                        previousBytes[0] = Arrays.copyOfRange(data, accountStart, accountEnd);
+                        previous[0] = new String(previousBytes[0], StandardCharsets.UTF_8);
+                    }
+                    String accountNumber = previous[0];
+                    try {
+                        writeEntry(accountNumber, offset);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                        return;
+                    }
+                    put(accountNumber, offset);
+                });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            flushBuffer();
+        } catch (IOException e) {
+            buffer.clear();
+            System.err.println("Error rebuilding transaction index: " + e.getMessage());
+        }
+    }
+
+    private void writeEntry(String accountNumber, long offset) throws IOException {
+        byte[] accNum = accountNumber.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < Short.BYTES + accNum.length + Long.BYTES) {
+            flushBuffer();
+        }
+        buffer.putShort((short) accNum.length).put(accNum).putLong(offset);
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
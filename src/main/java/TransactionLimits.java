@@ -0,0 +1,170 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Per-account velocity limits over sliding windows. Each channel has a
+// circular array of 60 minute buckets for the hourly window and 24 hour
+// buckets for the daily window, each bucket holding a count and an amount in
+// centavos. Running totals per window are kept alongside, and buckets are
+// subtracted from them as they fall out of the window, so checking every
+// policy costs the same however busy the account is and allocates nothing.
+//
+// Policies come from system properties, read once. Amounts are in pesos and
+// 0 means no limit:
+//   atm.limits.hourlyCount   atm.limits.dailyCount (default 10)
+//   atm.limits.hourlyAmount  atm.limits.dailyAmount
+// and the same names under atm.limits.atm. and atm.limits.web. for limits that
+// only apply to one channel, e.g. atm.limits.web.dailyAmount.
+public class TransactionLimits {
+    public enum Channel { ATM, WEB }
+
+    private static final int DEFAULT_DAILY_COUNT = 10;
+    private static final int MINUTE_BUCKETS = 60;
+    private static final int HOUR_BUCKETS = 24;
+    private static final long MINUTE_MILLIS = 60 * 1000;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    private static final int CHANNELS = Channel.values().length;
+    private static final Policy[] POLICIES = loadPolicies();
+
+    // Bucket arrays are indexed by channel * buckets + bucket
+    private final int[] minuteCounts = new int[CHANNELS * MINUTE_BUCKETS];
+    private final long[] minuteAmounts = new long[CHANNELS * MINUTE_BUCKETS];
+    private final int[] hourCounts = new int[CHANNELS * HOUR_BUCKETS];
+    private final long[] hourAmounts = new long[CHANNELS * HOUR_BUCKETS];
+    private final int[] hourlyCount = new int[CHANNELS];
+    private final long[] hourlyAmount = new long[CHANNELS];
+    private final int[] dailyCount = new int[CHANNELS];
+    private final long[] dailyAmount = new long[CHANNELS];
+    private long currentMinute;
+    private long currentHour;
+
+    private record Policy(Channel channel, boolean daily, boolean amount, long limit, String message) {
+        boolean appliesTo(Channel target) {
+            return channel == null || channel == target;
+        }
+    }
+
+    // Counts one transaction moving debitCents out of the account, or throws
+    // if that would break a policy. Returns the minute it was counted in;
+    // pass that to release to undo it if the operation fails.
+    public synchronized long reserve(Channel channel, long debitCents, long now) {
+        advance(now);
+        for (Policy policy : POLICIES) {
+            if (!policy.appliesTo(channel)) {
+                continue;
+            }
+            long used = usage(policy);
+            long adding = policy.amount ? debitCents : 1;
+            if (adding > 0 && used + adding > policy.limit) {
+                throw new IllegalStateException(policy.message);
+            }
+        }
+        record(channel, currentMinute, debitCents, 1);
+        return currentMinute;
+    }
+
+    // Takes a reservation back out of the buckets it was counted in. A window
+    // that has moved past those buckets has already dropped it.
+    public synchronized void release(Channel channel, long debitCents, long reservedMinute) {
+        record(channel, reservedMinute, -debitCents, -1);
+    }
+
+    private long usage(Policy policy) {
+        long used = 0;
+        for (int c = 0; c < CHANNELS; c++) {
+            if (policy.channel == null || policy.channel.ordinal() == c) {
+                if (policy.daily) {
+                    used += policy.amount ? dailyAmount[c] : dailyCount[c];
+                } else {
+                    used += policy.amount ? hourlyAmount[c] : hourlyCount[c];
+                }
+            }
+        }
+        return used;
+    }
+
+    private void record(Channel channel, long minute, long cents, int count) {
+        int c = channel.ordinal();
+        if (minute > currentMinute - MINUTE_BUCKETS) {
+            int i = c * MINUTE_BUCKETS + (int) (minute % MINUTE_BUCKETS);
+            minuteCounts[i] += count;
+            minuteAmounts[i] += cents;
+            hourlyCount[c] += count;
+            hourlyAmount[c] += cents;
+        }
+        long hour = minute * MINUTE_MILLIS / HOUR_MILLIS;
+        if (hour > currentHour - HOUR_BUCKETS) {
+            int i = c * HOUR_BUCKETS + (int) (hour % HOUR_BUCKETS);
+            hourCounts[i] += count;
+            hourAmounts[i] += cents;
+            dailyCount[c] += count;
+            dailyAmount[c] += cents;
+        }
+    }
+
+    // Empties the buckets that have left their window since the last call.
+    // After a long idle gap each array is cleared at most once.
+    private void advance(long now) {
+        long minute = now / MINUTE_MILLIS;
+        if (minute > currentMinute) {
+            long steps = Math.min(minute - currentMinute, MINUTE_BUCKETS);
+            for (long m = minute - steps + 1; m <= minute; m++) {
+                int bucket = (int) (m % MINUTE_BUCKETS);
+                for (int c = 0; c < CHANNELS; c++) {
+                    int i = c * MINUTE_BUCKETS + bucket;
+                    hourlyCount[c] -= minuteCounts[i];
+                    hourlyAmount[c] -= minuteAmounts[i];
+                    minuteCounts[i] = 0;
+                    minuteAmounts[i] = 0;
+                }
+            }
+            currentMinute = minute;
+        }
+        long hour = now / HOUR_MILLIS;
+        if (hour > currentHour) {
+            long steps = Math.min(hour - currentHour, HOUR_BUCKETS);
+            for (long h = hour - steps + 1; h <= hour; h++) {
+                int bucket = (int) (h % HOUR_BUCKETS);
+                for (int c = 0; c < CHANNELS; c++) {
+                    int i = c * HOUR_BUCKETS + bucket;
+                    dailyCount[c] -= hourCounts[i];
+                    dailyAmount[c] -= hourAmounts[i];
+                    hourCounts[i] = 0;
+                    hourAmounts[i] = 0;
+                }
+            }
+            currentHour = hour;
+        }
+    }
+
+    private static Policy[] loadPolicies() {
+        List<Policy> policies = new ArrayList<>();
+        Channel[] scopes = {null, Channel.ATM, Channel.WEB};
+        for (Channel scope : scopes) {
+            String prefix = scope == null ? "atm.limits." : "atm.limits." + scope.name().toLowerCase() + ".";
+            String label = scope == null ? "" : scope == Channel.ATM ? "ATM " : "Web ";
+            for (boolean daily : new boolean[] {false, true}) {
+                String window = daily ? "daily" : "hourly";
+                String retry = daily ? "Please try again tomorrow." : "Please try again later.";
+                long countDefault = scope == null && daily ? DEFAULT_DAILY_COUNT : 0;
+                long count = Long.getLong(prefix + window + "Count", countDefault);
+                if (count > 0) {
+                    policies.add(new Policy(scope, daily, false, count,
+                        capitalize(label + window) + " transaction limit reached. " + retry));
+                }
+                long pesos = Long.getLong(prefix + window + "Amount", 0);
+                if (pesos > 0) {
+                    policies.add(new Policy(scope, daily, true, pesos * 100,
+                        capitalize(label + window) + " amount limit of " + Money.ofCents(pesos * 100).toDisplayString()
+                            + " reached. " + retry));
+                }
+            }
+        }
+        return policies.toArray(new Policy[0]);
+    }
+
+    private static String capitalize(String text) {
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+}
@@ -0,0 +1,180 @@
+package main.java;
+
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Fixed-capacity history of an account's most recent transactions. Once full,
+// each new entry overwrites the oldest one.
+//
+// Entries are stored column by column in primitive arrays instead of as
+// Transaction objects: epoch millis, amount and balance in centavos, a one
+// byte type code and a description reference. Descriptions are mostly string
+// literals, so those rows share one String. A row costs about 30 bytes
+// against 150+ for a Transaction with its LocalDateTime and two Money objects.
+//
+// Writers take the ring's lock. Readers go through a Cursor without locking:
+// a writer claims a row before overwriting its columns and publishes it
+// afterwards, and the cursor drops any row claimed while it was reading.
+public class TransactionRing {
+    private static final Map<String, Byte> TYPE_CODES = new ConcurrentHashMap<>();
+    private static volatile String[] typeNames = new String[0];
+
+    private final int capacity;
+    private final long[] timestamps;
+    private final long[] amountCents;
+    private final long[] balanceCents;
+    private final byte[] types;
+    private final String[] descriptions;
+    // Rows [published - capacity, published) are readable; claimed runs
+    // ahead of published while a writer is filling a row
+    private volatile long claimed;
+    private volatile long published;
+
+    public TransactionRing(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.timestamps = new long[this.capacity];
+        this.amountCents = new long[this.capacity];
+        this.balanceCents = new long[this.capacity];
+        this.types = new byte[this.capacity];
+        this.descriptions = new String[this.capacity];
+    }
+
+    public void add(Transaction transaction) {
+        add(transaction.getType(), transaction.getAmount().getCents(), transaction.getBalanceAfter().getCents(),
+            transaction.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+            transaction.getDescription());
+    }
+
+    public synchronized void add(String type, long amount, long balanceAfter, long timestamp, String description) {
+        byte code = typeCode(type);
+        long sequence = published;
+        int row = (int) (sequence % capacity);
+        claimed = sequence + 1;
+        VarHandle.storeStoreFence();
+        timestamps[row] = timestamp;
+        amountCents[row] = amount;
+        balanceCents[row] = balanceAfter;
+        types[row] = code;
+        descriptions[row] = description;
+        published = sequence + 1;
+    }
+
+    // Starts before the oldest entry still held
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    // Materialises every entry, oldest first
+    public List<Transaction> snapshot() {
+        List<Transaction> transactions = new ArrayList<>(capacity);
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            transactions.add(cursor.toTransaction());
+        }
+        return transactions;
+    }
+
+    // True once entries have been overwritten and are only in the transaction log
+    public boolean hasDropped() {
+        return published > capacity;
+    }
+
+    // Epoch millis of the oldest entry still held, or Long.MAX_VALUE if empty
+    public long oldestTimestamp() {
+        Cursor cursor = cursor();
+        return cursor.next() ? cursor.getTimestamp() : Long.MAX_VALUE;
+    }
+
+    // One reusable view over the rows; next() loads the following row into
+    // the cursor's own fields, so reading a history allocates nothing per row
+    public class Cursor {
+        private long sequence;
+        private final long end;
+        private long timestamp;
+        private long amount;
+        private long balanceAfter;
+        private byte type;
+        private String description;
+
+        private Cursor() {
+            end = published;
+            sequence = Math.max(0, end - capacity) - 1;
+        }
+
+        // Moves to the next row, skipping rows overwritten since the cursor was created
+        public boolean next() {
+            while (++sequence < end) {
+                int row = (int) (sequence % capacity);
+                timestamp = timestamps[row];
+                amount = amountCents[row];
+                balanceAfter = balanceCents[row];
+                type = types[row];
+                description = descriptions[row];
+                VarHandle.acquireFence();
+                if (claimed <= sequence + capacity) {
+                    return true;
+                }
+                // A writer has started on this row, everything up to it is gone too
+                sequence = Math.max(sequence, claimed - capacity - 1);
+            }
+            return false;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getAmountCents() {
+            return amount;
+        }
+
+        public long getBalanceAfterCents() {
+            return balanceAfter;
+        }
+
+        public String getType() {
+            return typeName(type);
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public Transaction toTransaction() {
+            return new Transaction(getType(), Money.ofCents(amount), Money.ofCents(balanceAfter),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()), description);
+        }
+    }
+
+    // Transaction types are a small fixed set of names, shared by every ring
+    private static byte typeCode(String type) {
+        Byte code = TYPE_CODES.get(type);
+        return code != null ? code : registerType(type);
+    }
+
+    private static synchronized byte registerType(String type) {
+        Byte code = TYPE_CODES.get(type);
+        if (code == null) {
+            if (typeNames.length > 255) {
+                throw new IllegalStateException("Too many transaction types");
+            }
+            code = (byte) typeNames.length;
+            String[] names = Arrays.copyOf(typeNames, typeNames.length + 1);
+            names[code & 0xFF] = type;
+            typeNames = names;
+            TYPE_CODES.put(type, code);
+        }
+        return code;
+    }
+
+    private static String typeName(byte code) {
+        return typeNames[code & 0xFF];
+    }
+}
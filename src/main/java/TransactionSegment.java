@@ -0,0 +1,353 @@
+package main.java;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Compact binary transaction segment.
+//
+// File:   [int magic "ATXS"][int version] block*
+// Block:  [int rawLength][int compressedLength][int crc32(raw)][long baseTimestamp][int recordCount]
+//         followed by compressedLength bytes of Deflater output
+// Record: [varint length] [string accountNumber] [string type] [zigzag varint amount in centavos]
+//         [zigzag varint timestamp delta from the previous record in the block] [string description]
+// String: [varint length + 1][UTF-8 bytes], where a length of 0 encodes null
+public class TransactionSegment {
+    private static final int MAGIC = 0x41545853; // "ATXS"
+    private static final int VERSION = 1;
+    private static final int BLOCK_HEADER_SIZE = 24;
+    private static final int TARGET_BLOCK_SIZE = 64 * 1024;
+
+    public interface RecordVisitor {
+        void accept(String accountNumber, String type, long amountCents, long timestamp, String description);
+    }
+
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final CRC32 crc = new CRC32();
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(TARGET_BLOCK_SIZE + 1024);
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        private byte[] compressed = new byte[TARGET_BLOCK_SIZE];
+        private long baseTimestamp;
+        private long previousTimestamp;
+        private int recordCount;
+
+        public Writer(Path path) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        public void append(String accountNumber, String type, long amountCents, long timestamp, String description) throws IOException {
+            if (recordCount == 0) {
+                baseTimestamp = timestamp;
+                previousTimestamp = timestamp;
+            }
+            record.reset();
+            writeString(record, accountNumber);
+            writeString(record, type);
+            writeVarLong(record, zigZag(amountCents));
+            writeVarLong(record, zigZag(timestamp - previousTimestamp));
+            writeString(record, description);
+            previousTimestamp = timestamp;
+
+            writeVarLong(block, record.size());
+            record.writeTo(block);
+            recordCount++;
+            if (block.size() >= TARGET_BLOCK_SIZE) {
+                writeBlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (recordCount > 0) {
+                writeBlock();
+            }
+            deflater.end();
+            out.close();
+        }
+
+        private void writeBlock() throws IOException {
+            byte[] raw = block.toByteArray();
+            crc.reset();
+            crc.update(raw);
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+            out.writeInt(raw.length);
+            out.writeInt(compressedLength);
+            out.writeInt((int) crc.getValue());
+            out.writeLong(baseTimestamp);
+            out.writeInt(recordCount);
+            out.write(compressed, 0, compressedLength);
+            block.reset();
+            recordCount = 0;
+        }
+    }
+
+    public static void read(Path path, RecordVisitor visitor) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a transaction segment: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported transaction segment version " + version + " in " + path);
+            }
+            Inflater inflater = new Inflater();
+            CRC32 crc = new CRC32();
+            byte[] compressed = new byte[TARGET_BLOCK_SIZE];
+            byte[] raw = new byte[TARGET_BLOCK_SIZE * 2];
+            try {
+                byte[] header = new byte[BLOCK_HEADER_SIZE];
+                while (in.read(header, 0, 1) == 1) {
+                    in.readFully(header, 1, BLOCK_HEADER_SIZE - 1);
+                    DataInputStream h = new DataInputStream(new ByteArrayInputStream(header));
+                    int rawLength = h.readInt();
+                    int compressedLength = h.readInt();
+                    int checksum = h.readInt();
+                    long baseTimestamp = h.readLong();
+                    int recordCount = h.readInt();
+
+                    if (compressed.length < compressedLength) {
+                        compressed = new byte[compressedLength];
+                    }
+                    if (raw.length < rawLength) {
+                        raw = new byte[rawLength];
+                    }
+                    in.readFully(compressed, 0, compressedLength);
+                    inflater.reset();
+                    inflater.setInput(compressed, 0, compressedLength);
+                    int inflated = 0;
+                    while (inflated < rawLength && !inflater.finished()) {
+                        inflated += inflater.inflate(raw, inflated, rawLength - inflated);
+                    }
+                    crc.reset();
+                    crc.update(raw, 0, rawLength);
+                    if (inflated != rawLength || (int) crc.getValue() != checksum) {
+                        throw new IOException("Corrupt block in transaction segment " + path);
+                    }
+                    readBlock(raw, recordCount, baseTimestamp, visitor);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block in transaction segment " + path, e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private static void readBlock(byte[] raw, int recordCount, long baseTimestamp, RecordVisitor visitor) {
+        int[] position = new int[1];
+        long timestamp = baseTimestamp;
+        for (int i = 0; i < recordCount; i++) {
+            int length = (int) readVarLong(raw, position);
+            int end = position[0] + length;
+            String accountNumber = readString(raw, position);
+            String type = readString(raw, position);
+            long amountCents = unZigZag(readVarLong(raw, position));
+            timestamp += unZigZag(readVarLong(raw, position));
+            String description = readString(raw, position);
+            position[0] = end;
+            visitor.accept(accountNumber, type, amountCents, timestamp, description);
+        }
+    }
+
+    // Reads transactions.txt style CSV. Lines that do not start a record are
+    // continuation lines of a multi-line description (transfer receipts).
+    public static void readLegacy(Path path, RecordVisitor visitor) throws IOException {
+        LegacyRecordCollector collector = new LegacyRecordCollector(visitor);
+        LegacyFormatParser.readTransactions(path, 0, collector);
+        collector.finish();
+    }
+
+    static class LegacyRecordCollector implements LegacyFormatParser.TransactionVisitor {
+        private final RecordVisitor visitor;
+        private final StringBuilder description = new StringBuilder();
+        private String accountNumber;
+        private String type;
+        private long amountCents;
+        private long timestamp;
+        private boolean hasDescription;
+        private boolean pending;
+
+        LegacyRecordCollector(RecordVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        @Override
+        public void record(byte[] data, long offset, int accountStart, int accountEnd, int typeStart, int typeEnd,
+                           long amountCents, long timestamp, int descriptionStart, int descriptionEnd) {
+            finish();
+            // Consecutive records usually share the account and type, reuse those Strings
+            if (accountNumber == null || !matches(data, accountStart, accountEnd, accountNumber)) {
+                accountNumber = LegacyFormatParser.decode(data, accountStart, accountEnd);
+            }
+            if (type == null || !matches(data, typeStart, typeEnd, type)) {
+                type = LegacyFormatParser.decode(data, typeStart, typeEnd);
+            }
+            this.amountCents = amountCents;
+            this.timestamp = timestamp;
+            description.setLength(0);
+            hasDescription = descriptionStart >= 0;
+            if (hasDescription) {
+                description.append(LegacyFormatParser.decode(data, descriptionStart, descriptionEnd));
+            }
+            pending = true;
+        }
+
+        @Override
+        public void continuation(byte[] data, long offset, int start, int end) {
+            if (!pending) {
+                return;
+            }
+            description.append('\n').append(LegacyFormatParser.decode(data, start, end));
+            hasDescription = true;
+        }
+
+        void finish() {
+            if (pending) {
+                visitor.accept(accountNumber, type, amountCents, timestamp, hasDescription ? description.toString() : null);
+                pending = false;
+            }
+        }
+
+        private static boolean matches(byte[] data, int start, int end, String value) {
+            if (end - start != value.length()) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (data[start + i] != value.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public static void convertFromLegacy(Path csv, Path segment) throws IOException {
+        try (Writer writer = new Writer(segment)) {
+            IOException[] failure = new IOException[1];
+            readLegacy(csv, (accountNumber, type, amountCents, timestamp, description) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    writer.append(accountNumber, type, amountCents, timestamp, description);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+
+    public static void convertToLegacy(Path segment, Path csv) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+            read(segment, (accountNumber, type, amountCents, timestamp, description) -> {
+                StringBuilder line = new StringBuilder(64)
+                    .append(accountNumber).append(',')
+                    .append(type).append(',')
+                    .append(formatCents(amountCents)).append(',')
+                    .append(timestamp);
+                if (description != null) {
+                    line.append(',').append(description);
+                }
+                out.println(line);
+            });
+            if (out.checkError()) {
+                throw new IOException("Error writing " + csv);
+            }
+        }
+    }
+
+    public static String formatCents(long cents) {
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        return (cents < 0 ? "-" : "") + (abs / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(byte[] raw, int[] position) {
+        int length = (int) readVarLong(raw, position);
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(raw, position[0], length - 1, StandardCharsets.UTF_8);
+        position[0] += length - 1;
+        return value;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] raw, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = raw[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 3 || !(args[0].equals("to-binary") || args[0].equals("to-csv"))) {
+            System.err.println("Usage: TransactionSegment to-binary <transactions.txt> <segment>");
+            System.err.println("       TransactionSegment to-csv <segment> <transactions.txt>");
+            System.exit(1);
+        }
+        try {
+            if (args[0].equals("to-binary")) {
+                convertFromLegacy(Paths.get(args[1]), Paths.get(args[2]));
+            } else {
+                convertToLegacy(Paths.get(args[1]), Paths.get(args[2]));
+            }
+        } catch (IOException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package main.java;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Sealed, immutable transaction segments. Each time the active
+// transactions.txt rolls over it is converted into a compressed binary
+// segment and listed in segments.manifest, one line per segment:
+//   fileName,minTimestamp,maxTimestamp,recordCount,sourceLength,acc1;acc2;...
+// Queries consult the manifest first and only open segments whose time range
+// overlaps the request and whose account set contains the account.
+public class TransactionSegmentCatalog {
+    private static final String MANIFEST_FILE = "segments.manifest";
+    private static final String SEGMENT_SUFFIX = ".atxs";
+
+    private final File directory;
+    private final File manifestFile;
+    private volatile List<SegmentInfo> segments = Collections.emptyList();
+
+    public static class SegmentInfo {
+        private final String fileName;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+        private final int recordCount;
+        private final long sourceLength;
+        private final Set<String> accounts;
+
+        SegmentInfo(String fileName, long minTimestamp, long maxTimestamp, int recordCount,
+                    long sourceLength, Set<String> accounts) {
+            this.fileName = fileName;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.recordCount = recordCount;
+            this.sourceLength = sourceLength;
+            this.accounts = accounts;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getMinTimestamp() {
+            return minTimestamp;
+        }
+
+        public long getMaxTimestamp() {
+            return maxTimestamp;
+        }
+
+        public int getRecordCount() {
+            return recordCount;
+        }
+
+        public long getSourceLength() {
+            return sourceLength;
+        }
+
+        public boolean contains(String accountNumber) {
+            return accounts.contains(accountNumber);
+        }
+
+        public boolean overlaps(long from, long to) {
+            return minTimestamp <= to && maxTimestamp >= from;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s,%d,%d,%d,%d,%s",
+                fileName, minTimestamp, maxTimestamp, recordCount, sourceLength, String.join(";", accounts));
+        }
+
+        static SegmentInfo fromString(String line) {
+            String[] parts = line.split(",", 6);
+            if (parts.length != 6) {
+                throw new IllegalArgumentException("Invalid segment manifest entry");
+            }
+            Set<String> accounts = new HashSet<>();
+            for (String account : parts[5].split(";")) {
+                if (!account.isEmpty()) {
+                    accounts.add(account);
+                }
+            }
+            return new SegmentInfo(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                Integer.parseInt(parts[3]), Long.parseLong(parts[4]), accounts);
+        }
+    }
+
+    public TransactionSegmentCatalog(String directoryPath) {
+        this.directory = new File(directoryPath);
+        this.manifestFile = new File(directory, MANIFEST_FILE);
+        loadManifest();
+    }
+
+    public List<SegmentInfo> getSegments() {
+        return segments;
+    }
+
+    public SegmentInfo getLastSegment() {
+        List<SegmentInfo> current = segments;
+        return current.isEmpty() ? null : current.get(current.size() - 1);
+    }
+
+    // Converts the active CSV log into a new sealed segment. Returns null if
+    // the log held no records. The caller truncates the log afterwards.
+    public synchronized SegmentInfo seal(Path activeLog) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create segment directory " + directory);
+        }
+        long sourceLength = Files.size(activeLog);
+        Path temp = new File(directory, "sealing" + SEGMENT_SUFFIX + ".tmp").toPath();
+        long[] range = {Long.MAX_VALUE, Long.MIN_VALUE};
+        int[] count = new int[1];
+        Set<String> accounts = new HashSet<>();
+        try (TransactionSegment.Writer writer = new TransactionSegment.Writer(temp)) {
+            IOException[] failure = new IOException[1];
+            TransactionSegment.readLegacy(activeLog, (accountNumber, type, amountCents, timestamp, description) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    writer.append(accountNumber, type, amountCents, timestamp, description);
+                } catch (IOException e) {
+                    failure[0] = e;
+                    return;
+                }
+                range[0] = Math.min(range[0], timestamp);
+                range[1] = Math.max(range[1], timestamp);
+                accounts.add(accountNumber);
+                count[0]++;
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        if (count[0] == 0) {
+            Files.deleteIfExists(temp);
+            return null;
+        }
+
+        String fileName = String.format("seg-%d-%d%s", range[0], segments.size(), SEGMENT_SUFFIX);
+        Files.move(temp, new File(directory, fileName).toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        SegmentInfo info = new SegmentInfo(fileName, range[0], range[1], count[0], sourceLength, accounts);
+        List<SegmentInfo> updated = new ArrayList<>(segments);
+        updated.add(info);
+        AtomicFile.write(manifestFile, out -> {
+            for (SegmentInfo segment : updated) {
+                out.println(segment.toString());
+            }
+        });
+        segments = Collections.unmodifiableList(updated);
+        return info;
+    }
+
+    public void scan(String accountNumber, long from, long to, TransactionSegment.RecordVisitor visitor) throws IOException {
+        for (SegmentInfo segment : segments) {
+            if (!segment.contains(accountNumber) || !segment.overlaps(from, to)) {
+                continue;
+            }
+            TransactionSegment.read(new File(directory, segment.getFileName()).toPath(),
+                (account, type, amountCents, timestamp, description) -> {
+                    if (account.equals(accountNumber) && timestamp >= from && timestamp <= to) {
+                        visitor.accept(account, type, amountCents, timestamp, description);
+                    }
+                });
+        }
+    }
+
+    private void loadManifest() {
+        if (!manifestFile.exists()) {
+            return;
+        }
+        List<SegmentInfo> loaded = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    loaded.add(SegmentInfo.fromString(line));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Error parsing segment manifest entry: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading segment manifest: " + e.getMessage());
+        }
+        segments = Collections.unmodifiableList(loaded);
+    }
+}
@@ -0,0 +1,18 @@
+package main.java;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface TransactionStore {
+    CompletableFuture<Void> append(String accountNumber, String type, Money amount, long timestamp, String description);
+
+    List<TransactionHistory.Transaction> read(String accountNumber, long from, long to) throws IOException;
+
+    static TransactionStore create(String logPath, String indexPath, String segmentDirectory) throws IOException {
+        if ("lsm".equals(System.getProperty(AccountStore.STORAGE_PROPERTY))) {
+            return new LsmTransactionStore(LsmStore.shared());
+        }
+        return new FileTransactionStore(logPath, indexPath, segmentDirectory);
+    }
+}
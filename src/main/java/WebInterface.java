@@ -1,34 +1,58 @@
 package main.java;
 
-import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class WebInterface {
     private static final int PORT = 8080;
-    private HttpServer server;
+    private static final int MAX_BODY_BYTES = Integer.getInteger("atm.web.maxBodyBytes", 16 * 1024);
+    private static final int MAX_DESCRIPTION_LENGTH = 200;
+    // Request fields each endpoint reads, by position in the parsed array
+    private static final String[] LOGIN_FIELDS = {"accountNumber", "pin"};
+    private static final String[] TRANSACTION_FIELDS =
+        {"accountNumber", "pin", "type", "amount", "recipient", "description", "requestId"};
+    private static final String[] BATCH_FIELDS = {"accountNumber", "pin", "description", "transfers"};
+    private static final String[] BATCH_ITEM_FIELDS = {"recipient", "amount"};
+    // Idle parsers, reused across requests so their buffers are allocated once
+    private final Queue<JsonReader> readers = new ConcurrentLinkedQueue<>();
+    private WebServer server;
     @SuppressWarnings("unused")
     private ATMInterface atmInterface;
-    public WebInterface(ATMInterface atmInterface, HashMap<String, Account> accounts) {
+    private final AccountRegistry accounts;
+    private final TransactionEngine engine;
+    private final LoginThrottle loginThrottle;
+    public WebInterface(ATMInterface atmInterface, AccountRegistry accounts) {
+        this(accounts, atmInterface.getEngine(), atmInterface.getLoginThrottle());
         this.atmInterface = atmInterface;
+    }
+
+    // Serves the API without the desktop interface, for WebLoadTest
+    WebInterface(AccountRegistry accounts, TransactionEngine engine, LoginThrottle loginThrottle) {
+        this.accounts = accounts;
+        this.engine = engine;
+        this.loginThrottle = loginThrottle;
         initializeServer();
     }
 
     private void initializeServer() {
         try {
-            server = HttpServer.create(new InetSocketAddress(PORT), 0);
-            server.setExecutor(Executors.newCachedThreadPool());
+            server = WebServer.create(PORT, Integer.getInteger("atm.web.backlog", 0), createExecutor(), MAX_BODY_BYTES);
             
             // Configure routes
             server.createContext("/", new MainHandler());
             server.createContext("/api/login", new LoginHandler());
             server.createContext("/api/account", new AccountHandler());
             server.createContext("/api/transaction", new TransactionHandler());
+            server.createContext("/api/batch-transfer", new BatchTransferHandler());
             server.createContext("/admin-dashboard", new AdminDashboardHandler());
             
             server.start();
@@ -38,7 +62,68 @@ public class WebInterface {
         }
     }
 
+    // "virtual" runs each exchange on its own virtual thread, so handlers
+    // blocked on file I/O do not pin a platform thread each; "cached" is the
+    // old unbounded platform thread pool
+    private static ExecutorService createExecutor() {
+        String mode = System.getProperty("atm.web.executor", "virtual");
+        return switch (mode) {
+            case "virtual" -> Executors.newVirtualThreadPerTaskExecutor();
+            case "cached" -> Executors.newCachedThreadPool();
+            default -> throw new IllegalArgumentException("Unknown web executor mode: " + mode);
+        };
+    }
+
     private class MainHandler implements HttpHandler {
+        private static final StaticPage PAGE = new StaticPage("text/html; charset=utf-8",
+            "<!DOCTYPE html>\n" +
+            "<html>\n" +
+            "<head>\n" +
+            "    <title>BDA ATM System</title>\n" +
+            "    <style>\n" +
+            "        body { font-family: 'Consolas', monospace; background: #142030; color: #00ffff; }\n" +
+            "        .container { max-width: 800px; margin: 50px auto; padding: 20px; }\n" +
+            "        .title { text-align: center; font-size: 2.5em; margin-bottom: 30px; }\n" +
+            "        .form-group { margin-bottom: 20px; }\n" +
+            "        input { background: #1a2835; border: 2px solid #00ffff; color: #00ffff; padding: 10px; width: 100%; }\n" +
+            "        button { background: #00ffff; color: #142030; border: none; padding: 10px 20px; cursor: pointer; }\n" +
+            "    </style>\n" +
+            "</head>\n" +
+            "<body>\n" +
+            "    <div class='container'>\n" +
+            "        <h1 class='title'>BDA ATM System</h1>\n" +
+            "        <div class='form-group'>\n" +
+            "            <input type='text' id='accountNumber' placeholder='Account Number'>\n" +
+            "        </div>\n" +
+            "        <div class='form-group'>\n" +
+            "            <input type='password' id='pin' placeholder='PIN'>\n" +
+            "        </div>\n" +
+            "        <button onclick='login()'>Login</button>\n" +
+            "    </div>\n" +
+            "    <script>\n" +
+            "        async function login() {\n" +
+            "            const accountNumber = document.getElementById('accountNumber').value;\n" +
+            "            const pin = document.getElementById('pin').value;\n" +
+            "            try {\n" +
+            "                const response = await fetch('/api/login', {\n" +
+            "                    method: 'POST',\n" +
+            "                    headers: { 'Content-Type': 'application/json' },\n" +
+            "                    body: JSON.stringify({ accountNumber, pin })\n" +
+            "                });\n" +
+            "                const data = await response.json();\n" +
+            "                if (data.success) {\n" +
+            "                    window.location.href = data.redirectUrl || '/dashboard';\n" +
+            "                } else {\n" +
+            "                    alert(data.message);\n" +
+            "                }\n" +
+            "            } catch (error) {\n" +
+            "                alert('Login failed. Please try again.');\n" +
+            "            }\n" +
+            "        }\n" +
+            "    </script>\n" +
+            "</body>\n" +
+            "</html>");
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if (!isLocalRequest(exchange)) {
@@ -46,55 +131,7 @@ public class WebInterface {
                 return;
             }
 
-            String response = "<!DOCTYPE html>\n" +
-                "<html>\n" +
-                "<head>\n" +
-                "    <title>BDA ATM System</title>\n" +
-                "    <style>\n" +
-                "        body { font-family: 'Consolas', monospace; background: #142030; color: #00ffff; }\n" +
-                "        .container { max-width: 800px; margin: 50px auto; padding: 20px; }\n" +
-                "        .title { text-align: center; font-size: 2.5em; margin-bottom: 30px; }\n" +
-                "        .form-group { margin-bottom: 20px; }\n" +
-                "        input { background: #1a2835; border: 2px solid #00ffff; color: #00ffff; padding: 10px; width: 100%; }\n" +
-                "        button { background: #00ffff; color: #142030; border: none; padding: 10px 20px; cursor: pointer; }\n" +
-                "    </style>\n" +
-                "</head>\n" +
-                "<body>\n" +
-                "    <div class='container'>\n" +
-                "        <h1 class='title'>BDA ATM System</h1>\n" +
-                "        <div class='form-group'>\n" +
-                "            <input type='text' id='accountNumber' placeholder='Account Number'>\n" +
-                "        </div>\n" +
-                "        <div class='form-group'>\n" +
-                "            <input type='password' id='pin' placeholder='PIN'>\n" +
-                "        </div>\n" +
-                "        <button onclick='login()'>Login</button>\n" +
-                "    </div>\n" +
-                "    <script>\n" +
-                "        async function login() {\n" +
-                "            const accountNumber = document.getElementById('accountNumber').value;\n" +
-                "            const pin = document.getElementById('pin').value;\n" +
-                "            try {\n" +
-                "                const response = await fetch('/api/login', {\n" +
-                "                    method: 'POST',\n" +
-                "                    headers: { 'Content-Type': 'application/json' },\n" +
-                "                    body: JSON.stringify({ accountNumber, pin })\n" +
-                "                });\n" +
-                "                const data = await response.json();\n" +
-                "                if (data.success) {\n" +
-                "                    window.location.href = data.redirectUrl || '/dashboard';\n" +
-                "                } else {\n" +
-                "                    alert(data.message);\n" +
-                "                }\n" +
-                "            } catch (error) {\n" +
-                "                alert('Login failed. Please try again.');\n" +
-                "            }\n" +
-                "        }\n" +
-                "    </script>\n" +
-                "</body>\n" +
-                "</html>";
-
-            sendResponse(exchange, 200, response);
+            PAGE.send(exchange);
         }
     }
 
@@ -107,19 +144,12 @@ public class WebInterface {
             }
 
             if ("POST".equals(exchange.getRequestMethod())) {
-                // Read the request body
-                String requestBody = new String(exchange.getRequestBody().readAllBytes());
-                // Parse JSON request
-                String username = "";
-                String password = "";
-                try {
-                    // Simple JSON parsing (you might want to use a proper JSON library)
-                    username = requestBody.replaceAll(".*\"accountNumber\":\s*\"([^\"]*)\".*", "$1");
-                    password = requestBody.replaceAll(".*\"pin\":\s*\"([^\"]*)\".*", "$1");
-                } catch (Exception e) {
-                    sendResponse(exchange, 400, "{\"success\": false, \"message\": \"Invalid request format\"}");
+                String[] fields = readFields(exchange, LOGIN_FIELDS);
+                if (fields == null) {
                     return;
                 }
+                String username = fields[0] != null ? fields[0] : "";
+                String password = fields[1] != null ? fields[1] : "";
 
                 // Authenticate using AdminAccount
                 if (AdminAccount.authenticate(username, password)) {
@@ -135,6 +165,8 @@ public class WebInterface {
         }
     }
 
+    // POST /api/account          {"accountNumber", "pin"} -> account details and balance
+    // POST /api/account/history  {"accountNumber", "pin"} -> recent transactions, oldest first
     private class AccountHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -142,14 +174,80 @@ public class WebInterface {
                 sendResponse(exchange, 403, "{\"success\": false, \"message\": \"Access restricted to local network\"}");
                 return;
             }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "{\"success\": false, \"message\": \"Method not allowed\"}");
+                return;
+            }
+
+            String[] fields = readFields(exchange, LOGIN_FIELDS);
+            if (fields == null) {
+                return;
+            }
+            Account account = authenticate(exchange, fields[0], fields[1]);
+            if (account == null) {
+                return;
+            }
 
-            // Handle account-related operations
-            String response = "{\"success\": true, \"data\": {\"balance\": 1000}}"; 
-            sendResponse(exchange, 200, response);
+            try (JsonWriter json = beginJson(exchange, 200)) {
+                json.beginObject().name("success").value(true).name("data");
+                if (exchange.getRequestURI().getPath().endsWith("/history")) {
+                    json.beginArray();
+                    TransactionRing.Cursor cursor = account.getTransactionCursor();
+                    while (cursor.next()) {
+                        json.beginObject()
+                            .name("timestamp").value(cursor.getTimestamp())
+                            .name("type").value(cursor.getType())
+                            .name("amount").centsValue(cursor.getAmountCents())
+                            .name("balanceAfter").centsValue(cursor.getBalanceAfterCents())
+                            .name("description").value(cursor.getDescription())
+                            .endObject();
+                    }
+                    json.endArray();
+                } else {
+                    writeAccount(json, account);
+                }
+                json.endObject();
+            }
         }
     }
 
     private class AdminDashboardHandler implements HttpHandler {
+        private static final StaticPage PAGE = new StaticPage("text/html; charset=utf-8",
+            "<!DOCTYPE html>\n" +
+            "<html>\n" +
+            "<head>\n" +
+            "    <title>Admin Dashboard - BDA ATM System</title>\n" +
+            "    <style>\n" +
+            "        body { font-family: 'Consolas', monospace; background: #142030; color: #00ffff; }\n" +
+            "        .container { max-width: 1200px; margin: 50px auto; padding: 20px; }\n" +
+            "        .title { text-align: center; font-size: 2.5em; margin-bottom: 30px; }\n" +
+            "        .dashboard-grid { display: grid; grid-template-columns: repeat(auto-fit, minmax(300px, 1fr)); gap: 20px; }\n" +
+            "        .dashboard-card { background: #1a2835; padding: 20px; border: 2px solid #00ffff; }\n" +
+            "        .dashboard-card h2 { margin-top: 0; color: #00ffff; }\n" +
+            "        .button { background: #00ffff; color: #142030; border: none; padding: 10px 20px; cursor: pointer; }\n" +
+            "    </style>\n" +
+            "</head>\n" +
+            "<body>\n" +
+            "    <div class='container'>\n" +
+            "        <h1 class='title'>Admin Dashboard</h1>\n" +
+            "        <div class='dashboard-grid'>\n" +
+            "            <div class='dashboard-card'>\n" +
+            "                <h2>System Status</h2>\n" +
+            "                <p>ATM System is running normally</p>\n" +
+            "            </div>\n" +
+            "            <div class='dashboard-card'>\n" +
+            "                <h2>Account Management</h2>\n" +
+            "                <button class='button'>Manage Accounts</button>\n" +
+            "            </div>\n" +
+            "            <div class='dashboard-card'>\n" +
+            "                <h2>Transaction History</h2>\n" +
+            "                <button class='button'>View Transactions</button>\n" +
+            "            </div>\n" +
+            "        </div>\n" +
+            "    </div>\n" +
+            "</body>\n" +
+            "</html>");
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if (!isLocalRequest(exchange)) {
@@ -157,45 +255,15 @@ public class WebInterface {
                 return;
             }
 
-            String response = "<!DOCTYPE html>\n" +
-                "<html>\n" +
-                "<head>\n" +
-                "    <title>Admin Dashboard - BDA ATM System</title>\n" +
-                "    <style>\n" +
-                "        body { font-family: 'Consolas', monospace; background: #142030; color: #00ffff; }\n" +
-                "        .container { max-width: 1200px; margin: 50px auto; padding: 20px; }\n" +
-                "        .title { text-align: center; font-size: 2.5em; margin-bottom: 30px; }\n" +
-                "        .dashboard-grid { display: grid; grid-template-columns: repeat(auto-fit, minmax(300px, 1fr)); gap: 20px; }\n" +
-                "        .dashboard-card { background: #1a2835; padding: 20px; border: 2px solid #00ffff; }\n" +
-                "        .dashboard-card h2 { margin-top: 0; color: #00ffff; }\n" +
-                "        .button { background: #00ffff; color: #142030; border: none; padding: 10px 20px; cursor: pointer; }\n" +
-                "    </style>\n" +
-                "</head>\n" +
-                "<body>\n" +
-                "    <div class='container'>\n" +
-                "        <h1 class='title'>Admin Dashboard</h1>\n" +
-                "        <div class='dashboard-grid'>\n" +
-                "            <div class='dashboard-card'>\n" +
-                "                <h2>System Status</h2>\n" +
-                "                <p>ATM System is running normally</p>\n" +
-                "            </div>\n" +
-                "            <div class='dashboard-card'>\n" +
-                "                <h2>Account Management</h2>\n" +
-                "                <button class='button'>Manage Accounts</button>\n" +
-                "            </div>\n" +
-                "            <div class='dashboard-card'>\n" +
-                "                <h2>Transaction History</h2>\n" +
-                "                <button class='button'>View Transactions</button>\n" +
-                "            </div>\n" +
-                "        </div>\n" +
-                "    </div>\n" +
-                "</body>\n" +
-                "</html>";
-
-            sendResponse(exchange, 200, response);
+            PAGE.send(exchange);
         }
     }
 
+    // POST /api/transaction {"accountNumber", "pin", "type", "amount", "recipient", "description", "requestId"}
+    // type is deposit, withdraw or transfer; recipient and description are
+    // only used by transfers. A repeated requestId from the same account is
+    // answered from the engine's idempotency cache instead of moving money
+    // twice.
     private class TransactionHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -203,10 +271,284 @@ public class WebInterface {
                 sendResponse(exchange, 403, "{\"success\": false, \"message\": \"Access restricted to local network\"}");
                 return;
             }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "{\"success\": false, \"message\": \"Method not allowed\"}");
+                return;
+            }
+
+            String[] fields = readFields(exchange, TRANSACTION_FIELDS);
+            if (fields == null) {
+                return;
+            }
+            Account account = authenticate(exchange, fields[0], fields[1]);
+            if (account == null) {
+                return;
+            }
+
+            String type = fields[2];
+            String requestId = fields[6];
+            Money amount;
+            try {
+                amount = Money.parse(String.valueOf(fields[3]));
+            } catch (NumberFormatException | ArithmeticException e) {
+                sendError(exchange, 400, "Invalid amount");
+                return;
+            }
+
+            try {
+                switch (String.valueOf(type)) {
+                    case "deposit" -> TransactionEngine.await(
+                        engine.deposit(requestId, account, amount, TransactionLimits.Channel.WEB));
+                    case "withdraw" -> TransactionEngine.await(
+                        engine.withdraw(requestId, account, amount, TransactionLimits.Channel.WEB));
+                    case "transfer" -> {
+                        Account recipient = accounts.get(String.valueOf(fields[4]));
+                        if (recipient == null) {
+                            sendError(exchange, 404, "Recipient account not found");
+                            return;
+                        }
+                        if (recipient == account) {
+                            sendError(exchange, 400, "Cannot transfer to the same account");
+                            return;
+                        }
+                        String description = fields[5];
+                        if (description != null && !isValidDescription(description)) {
+                            sendError(exchange, 400, "Invalid description");
+                            return;
+                        }
+                        TransactionEngine.await(engine.transfer(requestId, account, amount, recipient,
+                            description != null ? description : "Web transfer", TransactionLimits.Channel.WEB));
+                    }
+                    default -> {
+                        sendError(exchange, 400, "Unknown transaction type");
+                        return;
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            } catch (IllegalStateException e) {
+                sendError(exchange, 409, e.getMessage());
+                return;
+            }
+
+            try (JsonWriter json = beginJson(exchange, 200)) {
+                json.beginObject()
+                    .name("success").value(true)
+                    .name("message").value("Transaction processed")
+                    .name("data");
+                writeAccount(json, account);
+                json.endObject();
+            }
+        }
+    }
+
+    // Descriptions go into the transaction log, where a line break would
+    // start what looks like another record
+    private static boolean isValidDescription(String description) {
+        if (description.length() > MAX_DESCRIPTION_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            if (Character.isISOControl(c) || c == '\u2028' || c == '\u2029') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // POST /api/batch-transfer {"accountNumber", "pin", "description",
+    // "transfers": [{"recipient", "amount"}, ...]}
+    // Pays every transfer out of the account as one batch. Some transfers may
+    // be rejected or fail while the rest go through, so the answer is 200
+    // with each transfer's status.
+    private class BatchTransferHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!isLocalRequest(exchange)) {
+                sendResponse(exchange, 403, "{\"success\": false, \"message\": \"Access restricted to local network\"}");
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "{\"success\": false, \"message\": \"Method not allowed\"}");
+                return;
+            }
+
+            List<String[]> transfers = new ArrayList<>();
+            String[] fields = readFields(exchange, BATCH_FIELDS, BATCH_ITEM_FIELDS, transfers);
+            if (fields == null) {
+                return;
+            }
+            Account account = authenticate(exchange, fields[0], fields[1]);
+            if (account == null) {
+                return;
+            }
+
+            String description = fields[2] != null ? fields[2] : "Web batch transfer";
+            if (!isValidDescription(description)) {
+                sendError(exchange, 400, "Invalid description");
+                return;
+            }
+            if (transfers.isEmpty()) {
+                sendError(exchange, 400, "No transfers given");
+                return;
+            }
+            BatchTransfer batch = new BatchTransfer();
+            for (String[] transfer : transfers) {
+                try {
+                    batch.add(String.valueOf(transfer[0]), Money.parse(String.valueOf(transfer[1])));
+                } catch (NumberFormatException | ArithmeticException e) {
+                    sendError(exchange, 400, "Invalid amount");
+                    return;
+                }
+            }
+            engine.transferBatch(account, batch, accounts, description, TransactionLimits.Channel.WEB).join();
+
+            try (JsonWriter json = beginJson(exchange, 200)) {
+                json.beginObject()
+                    .name("success").value(true)
+                    .name("message").value("Batch processed")
+                    .name("transferred").value(batch.getTransferredTotal())
+                    .name("transfers").beginArray();
+                for (BatchTransfer.Item item : batch.getItems()) {
+                    json.beginObject()
+                        .name("recipient").value(item.getRecipientAccountNumber())
+                        .name("amount").value(item.getAmount())
+                        .name("status").value(item.getStatus().name())
+                        .name("message").value(item.getMessage())
+                        .endObject();
+                }
+                json.endArray().name("data");
+                writeAccount(json, account);
+                json.endObject();
+            }
+        }
+    }
+
+    private static void writeAccount(JsonWriter json, Account account) throws IOException {
+        json.beginObject()
+            .name("accountNumber").value(account.getAccountNumber())
+            .name("accountHolder").value(account.getAccountHolder())
+            .name("balance").value(account.getBalance())
+            .endObject();
+    }
+
+    // Returns the account named by the request's accountNumber and pin, or
+    // sends the error response and returns null. Wrong PINs count towards
+    // the same lockout as the ATM login, and a locked account gets 429.
+    private Account authenticate(HttpExchange exchange, String accountNumber, String pin) throws IOException {
+        Account account = accountNumber == null ? null : accounts.get(accountNumber);
+        if (account != null) {
+            long lockedSeconds = loginThrottle.lockedSeconds(accountNumber);
+            if (lockedSeconds > 0) {
+                sendLocked(exchange, lockedSeconds,
+                    "Account is temporarily locked. Please try again in " + lockedSeconds + " seconds.");
+                return null;
+            }
+        }
+        if (account == null || !account.getPin().equals(pin)) {
+            if (account != null && loginThrottle.recordFailure(accountNumber) >= LoginThrottle.MAX_ATTEMPTS) {
+                sendLocked(exchange, loginThrottle.lockedSeconds(accountNumber), "Account locked due to "
+                    + LoginThrottle.MAX_ATTEMPTS + " failed attempts. Please try again in 5 minutes.");
+                return null;
+            }
+            sendError(exchange, 401, "Invalid account number or PIN");
+            return null;
+        }
+        loginThrottle.recordSuccess(accountNumber);
+        if (account.isDeleted() || account.isBlocked()) {
+            sendError(exchange, 403, account.isBlocked() ? "Account is blocked" : "Account has been deleted");
+            return null;
+        }
+        return account;
+    }
+
+    // Parses the request body as a JSON object and returns the string or
+    // number values of the named top-level fields, in the order of names,
+    // with null for any that are missing. Other fields are skipped without
+    // being decoded into Strings. On a malformed or oversized body the error
+    // response is sent and null returned.
+    private String[] readFields(HttpExchange exchange, String[] names) throws IOException {
+        return readFields(exchange, names, null, null);
+    }
+
+    // As above, and the last of names is an array of objects whose itemNames
+    // fields are added to items, one array of values per object
+    private String[] readFields(HttpExchange exchange, String[] names, String[] itemNames, List<String[]> items)
+            throws IOException {
+        JsonReader reader = readers.poll();
+        if (reader == null) {
+            reader = new JsonReader();
+        }
+        try {
+            reader.reset(exchange.getRequestBody(), MAX_BODY_BYTES);
+            if (reader.next() != JsonReader.Token.BEGIN_OBJECT) {
+                throw new JsonReader.MalformedJsonException("Expected a JSON object");
+            }
+            return readObject(reader, names, itemNames, items);
+        } catch (JsonReader.BodyTooLargeException e) {
+            sendError(exchange, 413, e.getMessage());
+            return null;
+        } catch (JsonReader.MalformedJsonException e) {
+            sendError(exchange, 400, "Invalid request format");
+            return null;
+        } finally {
+            readers.offer(reader);
+        }
+    }
+
+    // Reads the fields of the object whose BEGIN_OBJECT was just read
+    private static String[] readObject(JsonReader reader, String[] names, String[] itemNames, List<String[]> items)
+            throws IOException {
+        String[] values = new String[names.length];
+        while (reader.next() == JsonReader.Token.NAME) {
+            int index = indexOf(reader, names);
+            if (index < 0) {
+                reader.skipValue();
+                continue;
+            }
+            JsonReader.Token token = reader.next();
+            if (token == JsonReader.Token.STRING || token == JsonReader.Token.NUMBER) {
+                values[index] = reader.text();
+            } else if (token == JsonReader.Token.BEGIN_ARRAY && items != null && index == names.length - 1) {
+                while ((token = reader.next()) == JsonReader.Token.BEGIN_OBJECT) {
+                    items.add(readObject(reader, itemNames, null, null));
+                }
+                if (token != JsonReader.Token.END_ARRAY) {
+                    throw new JsonReader.MalformedJsonException("Expected an array of objects");
+                }
+            } else if (token == JsonReader.Token.BEGIN_OBJECT || token == JsonReader.Token.BEGIN_ARRAY) {
+                reader.skipContainer();
+            }
+        }
+        return values;
+    }
+
+    private static int indexOf(JsonReader reader, String[] names) {
+        for (int i = 0; i < names.length; i++) {
+            if (reader.textEquals(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Sends the headers with a chunked body and returns a writer streaming into it
+    private static JsonWriter beginJson(HttpExchange exchange, int statusCode) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(statusCode, 0);
+        return new JsonWriter(exchange.getResponseBody());
+    }
+
+    private static void sendLocked(HttpExchange exchange, long seconds, String message) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(seconds));
+        sendError(exchange, 429, message);
+    }
 
-            // Handle transaction operations
-            String response = "{\"success\": true, \"message\": \"Transaction processed\"}"; 
-            sendResponse(exchange, 200, response);
+    private static void sendError(HttpExchange exchange, int statusCode, String message) throws IOException {
+        try (JsonWriter json = beginJson(exchange, statusCode)) {
+            json.beginObject().name("success").value(false).name("message").value(message).endObject();
         }
     }
 
@@ -217,17 +559,19 @@ public class WebInterface {
     }
 
     private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", 
-            response.startsWith("<!DOCTYPE html>") ? "text/html" : "application/json");
-        exchange.sendResponseHeaders(statusCode, response.length());
+        exchange.getResponseHeaders().set("Content-Type", response.startsWith("{")
+            ? "application/json; charset=utf-8" : "text/plain; charset=utf-8");
+        // The length is in bytes, not characters
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, bytes.length);
         try (OutputStream os = exchange.getResponseBody()) {
-            os.write(response.getBytes());
+            os.write(bytes);
         }
     }
 
     public void stop() {
         if (server != null) {
-            server.stop(0);
+            server.stop();
         }
     }
 }
\ No newline at end of file
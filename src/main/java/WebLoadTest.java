@@ -0,0 +1,160 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Load test for the web API under many concurrent connections. For each
+// executor mode it starts WebInterface in this JVM, without the desktop
+// interface, and opens every connection at once. Each connection sends one
+// POST /api/account for a test account and reads the response to the end.
+// It prints the peak number of live platform threads in the JVM and the
+// latency percentiles from connecting to the last response byte.
+//
+// The clients run on virtual threads, so their carrier threads are counted
+// in the peak too; the baseline before each run is printed for comparison.
+// Serves on port 8080 like the application, so stop any running instance
+// first. -Datm.web.server and -Datm.web.backlog apply as usual.
+//   java -cp bin main.java.WebLoadTest [connections] [executor modes...]
+public class WebLoadTest {
+    private static final int PORT = 8080;
+    private static final String ACCOUNT = "900001";
+    private static final String PIN = "4321";
+    private static final int TIMEOUT_MILLIS = 60_000;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        String[] modes = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[] {"cached", "virtual"};
+
+        AccountRegistry accounts = new AccountRegistry();
+        accounts.put(new Account(ACCOUNT, PIN, Money.ofCents(100_000), "Load Test"));
+        TransactionEngine engine = new TransactionEngine(new MemoryAccountStore());
+        byte[] request = buildRequest();
+
+        StringBuilder report = new StringBuilder()
+            .append(String.format("%d connections, server %s%n", connections,
+                System.getProperty(WebServer.SERVER_PROPERTY, "jdk")))
+            .append(String.format("executor  threads before  peak    p50 ms    p99 ms    max ms  failed%n"));
+        for (String mode : modes) {
+            System.setProperty("atm.web.executor", mode);
+            WebInterface web = new WebInterface(accounts, engine, new LoginThrottle());
+            try {
+                // Warm-up, so class loading and JIT are not in the first run
+                run(request, Math.min(connections, 100));
+                int before = ManagementFactory.getThreadMXBean().getThreadCount();
+                ThreadSampler sampler = new ThreadSampler();
+                sampler.start();
+                long[] latencies = run(request, connections);
+                sampler.interrupt();
+                sampler.join();
+                int failed = (int) Arrays.stream(latencies).filter(latency -> latency < 0).count();
+                long[] completed = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+                report.append(String.format("%-8s  %14d  %4d  %8.1f  %8.1f  %8.1f  %6d%n", mode, before, sampler.peak,
+                    millis(completed, 0.50), millis(completed, 0.99), millis(completed, 1.0), failed));
+            } finally {
+                web.stop();
+            }
+        }
+        engine.close();
+        System.out.print(report);
+        System.exit(0);
+    }
+
+    // Latency of each connection in nanoseconds, or -1 if it failed or did
+    // not get a 200
+    private static long[] run(byte[] request, int connections) throws InterruptedException {
+        long[] latencies = new long[connections];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(connections);
+        AtomicInteger next = new AtomicInteger();
+        for (int i = 0; i < connections; i++) {
+            Thread.ofVirtual().start(() -> {
+                int id = next.getAndIncrement();
+                try {
+                    start.await();
+                    long started = System.nanoTime();
+                    latencies[id] = exchange(request) == 200 ? System.nanoTime() - started : -1;
+                } catch (IOException | InterruptedException e) {
+                    latencies[id] = -1;
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+        return latencies;
+    }
+
+    // Sends request and reads the response until the server closes the
+    // connection. Returns the status code.
+    private static int exchange(byte[] request) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("127.0.0.1", PORT), TIMEOUT_MILLIS);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            OutputStream out = socket.getOutputStream();
+            out.write(request);
+            out.flush();
+            InputStream in = socket.getInputStream();
+            // "HTTP/1.1 200 ..."
+            byte[] status = in.readNBytes(12);
+            if (status.length < 12) {
+                throw new IOException("Short response");
+            }
+            in.transferTo(OutputStream.nullOutputStream());
+            return Integer.parseInt(new String(status, 9, 3, StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static byte[] buildRequest() {
+        String body = "{\"accountNumber\": \"" + ACCOUNT + "\", \"pin\": \"" + PIN + "\"}";
+        String request = "POST /api/account HTTP/1.1\r\n"
+            + "Host: 127.0.0.1:" + PORT + "\r\n"
+            + "Content-Type: application/json\r\n"
+            + "Content-Length: " + body.getBytes(StandardCharsets.UTF_8).length + "\r\n"
+            + "Connection: close\r\n"
+            + "\r\n"
+            + body;
+        return request.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static double millis(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.max(0, Math.ceil(fraction * sorted.length) - 1));
+        return sorted[index] / 1e6;
+    }
+
+    // Records the most live platform threads seen until interrupted
+    private static class ThreadSampler extends Thread {
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private volatile int peak;
+
+        ThreadSampler() {
+            super("thread-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                peak = Math.max(peak, threads.getThreadCount());
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            peak = Math.max(peak, threads.getThreadCount());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package main.java;
+
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+// HTTP server backend for WebInterface. Handlers are plain
+// com.sun.net.httpserver handlers and run unchanged on either backend:
+//   jdk - the JDK's built-in com.sun.net.httpserver server (default)
+//   nio - NioWebServer, a single selector thread with keep-alive connections
+public interface WebServer {
+    String SERVER_PROPERTY = "atm.web.server";
+
+    // Routes requests whose path starts with path to handler; the longest
+    // matching path wins
+    void createContext(String path, HttpHandler handler);
+
+    void start();
+
+    void stop();
+
+    // Handlers run on executor. Request bodies longer than maxBodyBytes may
+    // be refused by the backend before a handler sees them.
+    static WebServer create(int port, int backlog, ExecutorService executor, int maxBodyBytes) throws IOException {
+        String mode = System.getProperty(SERVER_PROPERTY, "jdk");
+        return switch (mode) {
+            case "jdk" -> new JdkWebServer(port, backlog, executor);
+            case "nio" -> new NioWebServer(port, backlog, executor, maxBodyBytes);
+            default -> throw new IllegalArgumentException("Unknown web server mode: " + mode);
+        };
+    }
+}
@@ -1,3 +1,5 @@
 module ATMsimulationbank {
     requires java.desktop;
+    requires java.management;
+    requires jdk.httpserver;
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package main.java;
+
+import static main.java.TestSupport.check;
+import static main.java.TestSupport.checkEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Writes to transactions.txt in the working directory through
+// TransactionHistory, as Account does in the application
+class AccountHistoryTest {
+    private static final int CAPACITY = Integer.getInteger("atm.history.capacity", 50);
+
+    static void run() {
+        ringHoldsMostRecent();
+        earlierTransactionsComeFromLog();
+        earlierTransactionsWithRepeatedEntries();
+    }
+
+    private static void ringHoldsMostRecent() {
+        Account account = new Account("700001", "1234", Money.ZERO, "History One");
+        check(!account.hasEarlierTransactions(), "earlier transactions before any were dropped");
+        checkEquals(0, account.getEarlierTransactions().size(), "earlier transactions before any were dropped");
+        for (int i = 1; i <= CAPACITY; i++) {
+            account.deposit(Money.ofCents(i * 100));
+        }
+        List<Transaction> held = account.getTransactionHistory();
+        checkEquals(CAPACITY, held.size(), "held transactions");
+        checkEquals("DEPOSIT", held.get(0).getType(), "oldest held once the opening entry is dropped");
+        checkEquals(Money.ofCents(CAPACITY * 100L), held.get(CAPACITY - 1).getAmount(), "newest held amount");
+        check(account.hasEarlierTransactions(), "opening entry dropped");
+    }
+
+    // The deposits usually share a millisecond, so the oldest held entry has
+    // the same timestamp as several logged records that were dropped
+    private static void earlierTransactionsComeFromLog() {
+        Account account = new Account("700002", "1234", Money.ZERO, "History Two");
+        for (int i = 1; i <= CAPACITY + 10; i++) {
+            account.deposit(Money.ofCents(i * 100));
+        }
+        List<Long> amounts = new ArrayList<>();
+        for (TransactionHistory.Transaction earlier : account.getEarlierTransactions()) {
+            amounts.add(earlier.amount.getCents());
+        }
+        List<Long> expected = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            expected.add(i * 100L);
+        }
+        checkEquals(expected, amounts, "earlier deposit amounts");
+    }
+
+    private static void earlierTransactionsWithRepeatedEntries() {
+        Account account = new Account("700003", "1234", Money.ZERO, "History Three");
+        for (int i = 1; i <= CAPACITY + 10; i++) {
+            account.deposit(Money.ofCents(100));
+        }
+        checkEquals(10, account.getEarlierTransactions().size(), "earlier identical deposits");
+    }
+}
@@ -0,0 +1,124 @@
+package main.java;
+
+import static main.java.TestSupport.check;
+import static main.java.TestSupport.checkEquals;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+class AccountLedgerTest {
+    static void run() throws Exception {
+        replaysPutsAndBatches();
+        recoversFromSnapshot();
+        dropsRecordWithBadChecksum();
+        replaysDoubleBalanceRecords();
+    }
+
+    private static void replaysPutsAndBatches() throws Exception {
+        Path dir = TestSupport.scratchDirectory("ledger");
+        String snapshot = dir.resolve("accounts.txt").toString();
+        String log = dir.resolve("accounts.log").toString();
+
+        AccountLedger ledger = AccountLedger.open(snapshot, log);
+        checkEquals(0, ledger.load().size(), "accounts in a new ledger");
+        ledger.save(new Account("100001", "1111", Money.ofCents(12345), "Ana Cruz"));
+        ledger.saveAll(List.of(
+            new Account("100002", "2222", Money.ofCents(1), "Ben Reyes"),
+            new Account("100003", "3333", Money.ofCents(900_000_000_07L), "Cara Lim"),
+            // Past the 53 bits a double holds exactly
+            new Account("100004", "4444", Money.ofCents(9_007_199_254_740_993L), "Dan Go")));
+        ledger.save(new Account("100001", "4444", Money.ofCents(99), "Ana Santos"));
+
+        AccountLedger replayed = AccountLedger.open(snapshot, log);
+        Map<String, Account> accounts = replayed.load();
+        replayed.close();
+        ledger.close();
+
+        checkEquals(4, accounts.size(), "replayed accounts");
+        Account ana = accounts.get("100001");
+        checkEquals("4444", ana.getPin(), "PIN from the latest record");
+        checkEquals("Ana Santos", ana.getAccountHolder(), "name from the latest record");
+        checkEquals(99L, ana.getBalance().getCents(), "balance from the latest record");
+        checkEquals(1L, accounts.get("100002").getBalance().getCents(), "balance from a batch record");
+        checkEquals(900_000_000_07L, accounts.get("100003").getBalance().getCents(), "large balance from a batch record");
+        checkEquals(9_007_199_254_740_993L, accounts.get("100004").getBalance().getCents(), "balance past double precision");
+    }
+
+    private static void recoversFromSnapshot() throws Exception {
+        Path dir = TestSupport.scratchDirectory("ledger");
+        String snapshot = dir.resolve("accounts.txt").toString();
+        String log = dir.resolve("accounts.log").toString();
+
+        AccountLedger ledger = AccountLedger.open(snapshot, log);
+        ledger.load();
+        ledger.save(new Account("200001", "1234", Money.ofCents(5050), "Dina Uy"));
+        ledger.close();
+        checkEquals(0L, dir.resolve("accounts.log").toFile().length(), "log length after the closing snapshot");
+
+        AccountLedger reopened = AccountLedger.open(snapshot, log);
+        Map<String, Account> accounts = reopened.load();
+        reopened.close();
+        checkEquals(5050L, accounts.get("200001").getBalance().getCents(), "balance from the snapshot");
+    }
+
+    private static void dropsRecordWithBadChecksum() throws Exception {
+        Path dir = TestSupport.scratchDirectory("ledger");
+        String snapshot = dir.resolve("accounts.txt").toString();
+        String log = dir.resolve("accounts.log").toString();
+
+        AccountLedger ledger = AccountLedger.open(snapshot, log);
+        ledger.load();
+        ledger.save(new Account("300001", "1234", Money.ofCents(100), "Eli Tan"));
+        long firstRecordEnd = dir.resolve("accounts.log").toFile().length();
+        ledger.save(new Account("300001", "1234", Money.ofCents(200), "Eli Tan"));
+        ledger.sync();
+        long length = dir.resolve("accounts.log").toFile().length();
+        check(length > firstRecordEnd, "second record appended");
+
+        // Flip one bit in the last byte of the second record's balance
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.seek(length - 1);
+            int last = file.read();
+            file.seek(length - 1);
+            file.write(last ^ 1);
+        }
+
+        AccountLedger recovered = AccountLedger.open(snapshot, log);
+        Map<String, Account> accounts = recovered.load();
+        checkEquals(firstRecordEnd, dir.resolve("accounts.log").toFile().length(), "log truncated to the intact record");
+        checkEquals(100L, accounts.get("300001").getBalance().getCents(), "balance from the intact record");
+        recovered.close();
+        ledger.close();
+    }
+
+    // Logs written before balances were stored in centavos hold a double
+    // balance in pesos under record type 1
+    private static void replaysDoubleBalanceRecords() throws Exception {
+        Path dir = TestSupport.scratchDirectory("ledger");
+        ByteBuffer record = ByteBuffer.allocate(256);
+        record.position(8);
+        record.put((byte) 1);
+        for (String field : new String[] {"400001", "1234", "Fe Ong"}) {
+            byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+            record.putShort((short) bytes.length).put(bytes);
+        }
+        record.putDouble(1234.56);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, record.position() - 8);
+        record.putInt(0, record.position() - 8);
+        record.putInt(4, (int) crc.getValue());
+        Files.write(dir.resolve("accounts.log"), Arrays.copyOf(record.array(), record.position()));
+
+        AccountLedger ledger = AccountLedger.open(dir.resolve("accounts.txt").toString(), dir.resolve("accounts.log").toString());
+        Map<String, Account> accounts = ledger.load();
+        ledger.close();
+        checkEquals(123456L, accounts.get("400001").getBalance().getCents(), "balance from a double record");
+    }
+}
@@ -0,0 +1,51 @@
+package main.java;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Runs every test class and exits non-zero if any check failed. Account
+// operations log to transactions.txt in the working directory like the
+// application does, so run it from an empty scratch directory:
+//   java --enable-preview -cp <classes> main.java.AllTests
+public class AllTests {
+    public static void main(String[] args) {
+        for (String file : new String[] {"transactions.txt", "accounts.txt", "accounts.log"}) {
+            if (new File(file).exists()) {
+                System.err.println("Found " + file + " here; run the tests from an empty directory");
+                System.exit(2);
+            }
+        }
+        // Read once when the classes load, so set before any test runs.
+        // Only the web channel is limited; the ATM channel is left open for
+        // the tests that move money.
+        System.setProperty("atm.limits.dailyCount", "0");
+        System.setProperty("atm.limits.web.hourlyCount", "3");
+        System.setProperty("atm.limits.web.dailyAmount", "1000");
+
+        Map<String, TestSupport.Action> tests = new LinkedHashMap<>();
+        tests.put("AccountLedgerTest", AccountLedgerTest::run);
+        tests.put("LegacyFormatParserTest", LegacyFormatParserTest::run);
+        tests.put("TransactionLimitsTest", TransactionLimitsTest::run);
+        tests.put("IdempotencyCacheTest", IdempotencyCacheTest::run);
+        tests.put("FileTransactionStoreTest", FileTransactionStoreTest::run);
+        tests.put("AccountHistoryTest", AccountHistoryTest::run);
+        tests.put("TransactionEngineTest", TransactionEngineTest::run);
+        tests.put("LsmStoreTest", LsmStoreTest::run);
+        tests.put("NioWebServerTest", NioWebServerTest::run);
+
+        int failed = 0;
+        for (Map.Entry<String, TestSupport.Action> test : tests.entrySet()) {
+            try {
+                test.getValue().run();
+                System.out.println("ok    " + test.getKey());
+            } catch (Throwable e) {
+                failed++;
+                System.out.println("FAIL  " + test.getKey() + ": " + e);
+                e.printStackTrace();
+            }
+        }
+        System.out.println(failed == 0 ? "All tests passed" : failed + " of " + tests.size() + " test classes failed");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
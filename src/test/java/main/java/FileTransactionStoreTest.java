@@ -0,0 +1,77 @@
+package main.java;
+
+import static main.java.TestSupport.checkEquals;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class FileTransactionStoreTest {
+    private static final String TRANSFER = "TRANSFER TO:\n  Account: 222222\n  Name: Ben Reyes\n  Amount: ₱12.50";
+
+    static void run() throws Exception {
+        readsMultiLineRecordsThroughIndex();
+        rebuildsLostIndexEntries();
+    }
+
+    private static void readsMultiLineRecordsThroughIndex() throws Exception {
+        Path dir = TestSupport.scratchDirectory("transactions");
+        String log = dir.resolve("transactions.txt").toString();
+        String index = dir.resolve("transactions.idx").toString();
+        String segments = dir.resolve("segments").toString();
+        long now = System.currentTimeMillis();
+
+        FileTransactionStore store = new FileTransactionStore(log, index, segments);
+        store.append("111111", "DEPOSIT", Money.ofCents(10_000), now, "Ana Cruz");
+        store.append("111111", "TRANSFER_OUT", Money.ofCents(1250), now + 1, TRANSFER);
+        store.append("222222", "TRANSFER_IN", Money.ofCents(1250), now + 1, "TRANSFER FROM:\n  Account: 111111");
+        store.append("111111", "WITHDRAWAL", Money.ofCents(500), now + 2, "Ana Cruz").join();
+
+        List<String> expected = List.of(
+            "DEPOSIT 10000 Ana Cruz",
+            "TRANSFER_OUT 1250 " + TRANSFER,
+            "WITHDRAWAL 500 Ana Cruz");
+        checkEquals(expected, describe(store.read("111111", Long.MIN_VALUE, Long.MAX_VALUE)), "records for 111111");
+        checkEquals(expected.subList(1, 2), describe(store.read("111111", now + 1, now + 1)), "records in a time range");
+
+        // A new store rebuilds what it needs from the files on disk
+        FileTransactionStore reopened = new FileTransactionStore(log, index, segments);
+        checkEquals(expected, describe(reopened.read("111111", Long.MIN_VALUE, Long.MAX_VALUE)), "records after reopening");
+        checkEquals(List.of("TRANSFER_IN 1250 TRANSFER FROM:\n  Account: 111111"),
+            describe(reopened.read("222222", Long.MIN_VALUE, Long.MAX_VALUE)), "records for 222222");
+    }
+
+    // The index is not forced, so a crash can lose its last entries or tear
+    // one in half. Reopening indexes those records from the log again.
+    private static void rebuildsLostIndexEntries() throws Exception {
+        Path dir = TestSupport.scratchDirectory("transactions");
+        String log = dir.resolve("transactions.txt").toString();
+        String index = dir.resolve("transactions.idx").toString();
+        String segments = dir.resolve("segments").toString();
+        long now = System.currentTimeMillis();
+
+        FileTransactionStore store = new FileTransactionStore(log, index, segments);
+        store.append("333333", "DEPOSIT", Money.ofCents(100), now, "Cara Lim");
+        store.append("333333", "DEPOSIT", Money.ofCents(200), now + 1, "Cara Lim");
+        store.append("333333", "DEPOSIT", Money.ofCents(300), now + 2, "Cara Lim").join();
+        // Each entry is 16 bytes: drop the last one and half of the one before
+        try (RandomAccessFile file = new RandomAccessFile(index, "rw")) {
+            checkEquals(48L, file.length(), "index length");
+            file.setLength(24);
+        }
+
+        FileTransactionStore reopened = new FileTransactionStore(log, index, segments);
+        checkEquals(List.of("DEPOSIT 100 Cara Lim", "DEPOSIT 200 Cara Lim", "DEPOSIT 300 Cara Lim"),
+            describe(reopened.read("333333", Long.MIN_VALUE, Long.MAX_VALUE)), "records after losing index entries");
+        checkEquals(48L, dir.resolve("transactions.idx").toFile().length(), "index length after catching up");
+    }
+
+    private static List<String> describe(List<TransactionHistory.Transaction> transactions) {
+        List<String> described = new ArrayList<>();
+        for (TransactionHistory.Transaction transaction : transactions) {
+            described.add(transaction.type + " " + transaction.amount.getCents() + " " + transaction.description);
+        }
+        return described;
+    }
+}
@@ -0,0 +1,93 @@
+package main.java;
+
+import static main.java.TestSupport.check;
+import static main.java.TestSupport.checkEquals;
+import static main.java.TestSupport.checkThrows;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class IdempotencyCacheTest {
+    static void run() {
+        repeatReturnsFirstResult();
+        retryWaitsForRunningAttempt();
+        differentOperationIsRejected();
+        failedAttemptIsForgotten();
+        expiredEntryRunsAgain();
+        oldestEntriesAreEvicted();
+    }
+
+    private static void repeatReturnsFirstResult() {
+        IdempotencyCache cache = new IdempotencyCache();
+        AtomicInteger runs = new AtomicInteger();
+        cache.execute("r1", "deposit 100", () -> counted(runs)).join();
+        cache.execute("r1", "deposit 100", () -> counted(runs)).join();
+        checkEquals(1, runs.get(), "runs for a repeated request");
+        cache.execute("r2", "deposit 100", () -> counted(runs)).join();
+        checkEquals(2, runs.get(), "runs for a new request ID");
+    }
+
+    private static void retryWaitsForRunningAttempt() {
+        IdempotencyCache cache = new IdempotencyCache();
+        CompletableFuture<Void> running = new CompletableFuture<>();
+        CompletableFuture<Void> first = cache.execute("r1", "withdraw 50", () -> running);
+        CompletableFuture<Void> retry = cache.execute("r1", "withdraw 50", () -> {
+            throw new AssertionError("retry ran while the first attempt was running");
+        });
+        check(!retry.isDone(), "retry finished before the first attempt");
+        running.complete(null);
+        check(first.isDone() && retry.isDone(), "retry completes with the first attempt");
+    }
+
+    private static void differentOperationIsRejected() {
+        IdempotencyCache cache = new IdempotencyCache();
+        cache.execute("r1", "withdraw 50", () -> CompletableFuture.completedFuture(null)).join();
+        CompletionException e = checkThrows(CompletionException.class,
+            () -> cache.execute("r1", "withdraw 500", () -> CompletableFuture.completedFuture(null)).join(), "reused request ID");
+        check(e.getCause() instanceof IllegalArgumentException, "reused request ID fails with " + e.getCause());
+    }
+
+    private static void failedAttemptIsForgotten() {
+        IdempotencyCache cache = new IdempotencyCache();
+        checkThrows(CompletionException.class, () -> cache.execute("r1", "withdraw 50",
+            () -> CompletableFuture.failedFuture(new IllegalStateException("Insufficient funds"))).join(), "failed attempt");
+        AtomicInteger runs = new AtomicInteger();
+        cache.execute("r1", "withdraw 50", () -> counted(runs)).join();
+        checkEquals(1, runs.get(), "runs after a failed attempt");
+    }
+
+    private static void expiredEntryRunsAgain() {
+        IdempotencyCache cache = withProperty("atm.idempotency.ttlSeconds", "0");
+        AtomicInteger runs = new AtomicInteger();
+        cache.execute("r1", "deposit 100", () -> counted(runs)).join();
+        cache.execute("r1", "deposit 100", () -> counted(runs)).join();
+        checkEquals(2, runs.get(), "runs with a zero TTL");
+    }
+
+    private static void oldestEntriesAreEvicted() {
+        IdempotencyCache cache = withProperty("atm.idempotency.maxEntries", "2");
+        AtomicInteger runs = new AtomicInteger();
+        for (String id : new String[] {"r1", "r2", "r3", "r4"}) {
+            cache.execute(id, "deposit 100", () -> counted(runs)).join();
+        }
+        cache.execute("r4", "deposit 100", () -> counted(runs)).join();
+        checkEquals(4, runs.get(), "runs for a recent request ID");
+        cache.execute("r1", "deposit 100", () -> counted(runs)).join();
+        checkEquals(5, runs.get(), "runs for an evicted request ID");
+    }
+
+    private static CompletableFuture<Void> counted(AtomicInteger runs) {
+        runs.incrementAndGet();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static IdempotencyCache withProperty(String name, String value) {
+        System.setProperty(name, value);
+        try {
+            return new IdempotencyCache();
+        } finally {
+            System.clearProperty(name);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package main.java;
+
+import static main.java.TestSupport.check;
+import static main.java.TestSupport.checkEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+class LegacyFormatParserTest {
+    private static final String LOG =
+        "090304,Withdrawal,4000.0,1743260692994\n"
+        + "090304,CARD_EJECTED,0.00,1744117297615,Paul Allen P. Diaz, Jr.\r\n"
+        + "090304,TRANSFER_OUT,12.50,1744117297700,TRANSFER TO:\n"
+        + "  Account: 123456\n"
+        + "  Amount: 12.50\n"
+        + "123456,TRANSFER_IN,12.50,1744117297701\n";
+
+    static void run() throws Exception {
+        parsesAmounts();
+        readsRecordsAndContinuations();
+        readsMultiLineRecordAtOffset();
+        parsesAccounts();
+    }
+
+    private static void parsesAmounts() {
+        checkEquals(400000L, cents("4000.0"), "4000.0");
+        checkEquals(1250L, cents("12.50"), "12.50");
+        checkEquals(-300L, cents("-3"), "-3");
+        checkEquals(101L, cents("1.005"), "1.005 rounds half up");
+        checkEquals(100L, cents("0.999"), "0.999 rounds into the next peso");
+        checkEquals(LegacyFormatParser.INVALID_AMOUNT, cents(""), "empty amount");
+        checkEquals(LegacyFormatParser.INVALID_AMOUNT, cents("1.2.3"), "two decimal points");
+        checkEquals(LegacyFormatParser.INVALID_AMOUNT, cents("12a"), "trailing letter");
+        checkEquals(LegacyFormatParser.INVALID_AMOUNT, cents("12345678901234567"), "too many digits");
+    }
+
+    private static long cents(String text) {
+        byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+        return LegacyFormatParser.parseCents(data, 0, data.length);
+    }
+
+    private static void readsRecordsAndContinuations() throws Exception {
+        Path file = write(LOG);
+        List<String> seen = new ArrayList<>();
+        LegacyFormatParser.readTransactions(file, 0, new LegacyFormatParser.TransactionVisitor() {
+            @Override
+            public void record(byte[] data, long offset, int accountStart, int accountEnd, int typeStart, int typeEnd,
+                               long amountCents, long timestamp, int descriptionStart, int descriptionEnd) {
+                seen.add(offset + " " + LegacyFormatParser.decode(data, accountStart, accountEnd) + " "
+                    + LegacyFormatParser.decode(data, typeStart, typeEnd) + " " + amountCents + " " + timestamp
+                    + (descriptionStart < 0 ? "" : " [" + LegacyFormatParser.decode(data, descriptionStart, descriptionEnd) + "]"));
+            }
+
+            @Override
+            public void continuation(byte[] data, long offset, int start, int end) {
+                seen.add(offset + " + [" + LegacyFormatParser.decode(data, start, end) + "]");
+            }
+        });
+        checkEquals(List.of(
+            "0 090304 Withdrawal 400000 1743260692994",
+            "39 090304 CARD_EJECTED 0 1744117297615 [Paul Allen P. Diaz, Jr.]",
+            "103 090304 TRANSFER_OUT 1250 1744117297700 [TRANSFER TO:]",
+            "156 + [  Account: 123456]",
+            "174 + [  Amount: 12.50]",
+            "190 123456 TRANSFER_IN 1250 1744117297701"), seen, "records read");
+    }
+
+    private static void readsMultiLineRecordAtOffset() throws Exception {
+        Path file = write(LOG);
+        List<String> seen = new ArrayList<>();
+        TransactionSegment.LegacyRecordCollector collector = new TransactionSegment.LegacyRecordCollector(
+            (account, type, amountCents, timestamp, description) -> seen.add(account + " " + type + " " + description));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Smaller than the record, so the buffer has to grow
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            buffer = LegacyFormatParser.readTransactionAt(channel, 103, buffer, collector);
+            collector.finish();
+            check(buffer.capacity() > 16, "buffer grown to fit the record");
+            LegacyFormatParser.readTransactionAt(channel, 190, buffer, collector);
+            collector.finish();
+        }
+        checkEquals(List.of(
+            "090304 TRANSFER_OUT TRANSFER TO:\n  Account: 123456\n  Amount: 12.50",
+            "123456 TRANSFER_IN null"), seen, "records read by offset");
+    }
+
+    private static void parsesAccounts() throws Exception {
+        Path file = write("090304,1234,Paul Diaz,1500.5\nnot an account\n123456,0000,Ana,0\n");
+        List<String> seen = new ArrayList<>();
+        LegacyFormatParser.readAccounts(file,
+            (data, numberStart, numberEnd, pinStart, pinEnd, nameStart, nameEnd, balanceCents) ->
+                seen.add(LegacyFormatParser.decode(data, numberStart, numberEnd) + " "
+                    + LegacyFormatParser.decode(data, pinStart, pinEnd) + " "
+                    + LegacyFormatParser.decode(data, nameStart, nameEnd) + " " + balanceCents));
+        checkEquals(List.of("090304 1234 Paul Diaz 150050", "123456 0000 Ana 0"), seen, "accounts read");
+    }
+
+    private static Path write(String content) throws Exception {
+        Path file = TestSupport.scratchDirectory("legacy").resolve("transactions.txt");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
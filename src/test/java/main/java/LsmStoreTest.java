@@ -0,0 +1,97 @@
+package main.java;
+
+import static main.java.TestSupport.check;
+import static main.java.TestSupport.checkEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class LsmStoreTest {
+    static void run() throws Exception {
+        readsWritesAndRecovers();
+        readersSurviveCompaction();
+    }
+
+    private static void readsWritesAndRecovers() throws Exception {
+        String dir = TestSupport.scratchDirectory("lsm").toString();
+        LsmStore store = LsmStore.open(dir);
+        store.put("account:1", bytes("Ana"));
+        store.put("account:2", bytes("Ben"));
+        store.put("account:3", bytes("Cara"));
+        store.write(Map.of("account:2", bytes("Ben Reyes"), "other:1", bytes("x")));
+        store.delete("account:3");
+        checkEquals("Ben Reyes", text(store.get("account:2")), "value after a batch write");
+        check(store.get("account:3") == null, "deleted key still readable");
+        checkEquals(List.of("account:1", "account:2"), List.copyOf(store.scan("account:").keySet()), "keys scanned");
+        store.close();
+
+        LsmStore reopened = LsmStore.open(dir);
+        checkEquals("Ana", text(reopened.get("account:1")), "value after reopening");
+        checkEquals("Ben Reyes", text(reopened.get("account:2")), "batch value after reopening");
+        check(reopened.get("account:3") == null, "deleted key back after reopening");
+        reopened.close();
+    }
+
+    // Small memtables and few tables force a flush and compaction every few
+    // hundred writes, retiring tables while readers are still using them
+    private static void readersSurviveCompaction() throws Exception {
+        Path dir = TestSupport.scratchDirectory("lsm");
+        System.setProperty("atm.lsm.memtableBytes", "16384");
+        System.setProperty("atm.lsm.maxTables", "2");
+        LsmStore store;
+        try {
+            store = LsmStore.open(dir.toString());
+        } finally {
+            System.clearProperty("atm.lsm.memtableBytes");
+            System.clearProperty("atm.lsm.maxTables");
+        }
+        for (int i = 0; i < 100; i++) {
+            store.put(key(i), bytes("value " + i));
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                try {
+                    while (writing.get()) {
+                        for (int i = 0; i < 100; i += 7) {
+                            check(store.get(key(i)) != null, "key " + i + " missing");
+                        }
+                        check(store.scan("key:").size() >= 100, "scan missed keys");
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            readers[r].start();
+        }
+        byte[] filler = new byte[200];
+        for (int i = 0; i < 5_000; i++) {
+            store.put("filler:" + i, filler);
+        }
+        writing.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        store.close();
+        check(failures.isEmpty(), "readers failed during compaction: " + failures);
+    }
+
+    private static String key(int i) {
+        return String.format("key:%04d", i);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,173 @@
+package main.java;
+
+import static main.java.TestSupport.check;
+import static main.java.TestSupport.checkEquals;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+// Talks raw HTTP/1.1 to NioWebServer over loopback. The handler echoes the
+// method, path, X-Test header and body back.
+class NioWebServerTest {
+    private static final int MAX_BODY_BYTES = 1024;
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    private record Response(int status, String body) {
+    }
+
+    static void run() throws Exception {
+        NioWebServer server = new NioWebServer(0, 0, Executors.newCachedThreadPool(), MAX_BODY_BYTES);
+        server.createContext("/", NioWebServerTest::echo);
+        server.start();
+        try {
+            int port = server.getPort();
+            servesKeepAliveRequests(port);
+            readsBodySentInPieces(port);
+            servesPipelinedRequests(port);
+            rejectsMalformedRequests(port);
+        } finally {
+            server.stop();
+        }
+        closesIdleConnections();
+    }
+
+    private static void echo(HttpExchange exchange) throws IOException {
+        byte[] request = exchange.getRequestBody().readAllBytes();
+        byte[] body = (exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + " "
+            + exchange.getRequestHeaders().getFirst("X-Test") + " " + new String(request, StandardCharsets.UTF_8))
+            .getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void servesKeepAliveRequests(int port) throws IOException {
+        try (Socket socket = connect(port)) {
+            send(socket, "GET /one HTTP/1.1\r\nHost: localhost\r\nX-Test: first\r\n\r\n");
+            checkEquals(new Response(200, "GET /one first "), read(socket), "first response");
+            send(socket, "POST /two HTTP/1.1\r\nHost: localhost\r\nx-test:  second \r\nContent-Length: 5\r\n\r\nhello");
+            checkEquals(new Response(200, "POST /two second hello"), read(socket), "second response on the same connection");
+        }
+    }
+
+    private static void readsBodySentInPieces(int port) throws Exception {
+        try (Socket socket = connect(port)) {
+            send(socket, "POST /body HTTP/1.1\r\nHost: local");
+            Thread.sleep(50);
+            send(socket, "host\r\nContent-Length: 11\r\n\r\nhello");
+            Thread.sleep(50);
+            send(socket, " world");
+            checkEquals(new Response(200, "POST /body null hello world"), read(socket), "response to a split request");
+        }
+    }
+
+    private static void servesPipelinedRequests(int port) throws IOException {
+        try (Socket socket = connect(port)) {
+            send(socket, "GET /a HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "POST /b HTTP/1.1\r\nHost: localhost\r\nContent-Length: 3\r\n\r\nxyz"
+                + "GET /c HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            checkEquals(new Response(200, "GET /a null "), read(socket), "first pipelined response");
+            checkEquals(new Response(200, "POST /b null xyz"), read(socket), "second pipelined response");
+            checkEquals(new Response(200, "GET /c null "), read(socket), "third pipelined response");
+            checkEquals(-1, socket.getInputStream().read(), "connection closed after Connection: close");
+        }
+    }
+
+    private static void rejectsMalformedRequests(int port) throws IOException {
+        checkEquals(400, exchange(port, "GET /\r\n\r\n"), "request line without a version");
+        checkEquals(400, exchange(port, "GET / HTTP/1.1\r\nNo colon here\r\n\r\n"), "header without a colon");
+        checkEquals(400, exchange(port, "GET / HTTP/1.1\r\nContent-Length: -1\r\n\r\n"), "negative Content-Length");
+        checkEquals(411, exchange(port, "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"), "chunked body");
+        checkEquals(413, exchange(port, "POST / HTTP/1.1\r\nContent-Length: " + (MAX_BODY_BYTES + 1) + "\r\n\r\n"),
+            "body over the limit");
+        checkEquals(431, exchange(port, "GET / HTTP/1.1\r\nX-Big: " + "x".repeat(NioWebServer.BUFFER_SIZE) + "\r\n\r\n"),
+            "head larger than the read buffer");
+        checkEquals(400, exchange(port, "GET / HTTP/1.1\r\nX-Bad\nName: value\r\n\r\n"), "bare LF in a header name");
+        checkEquals(400, exchange(port, "GET / HTTP/1.1\r\nX-Test : value\r\n\r\n"), "space before the colon");
+        checkEquals(400, exchange(port, "GET / HTTP/1.1\r\nX-Test: a\nb\r\n\r\n"), "bare LF in a header value");
+        checkEquals(400, exchange(port, "G(T / HTTP/1.1\r\n\r\n"), "separator in the method");
+        // The server is still serving after all of that
+        checkEquals(200, exchange(port, "GET / HTTP/1.1\r\nConnection: close\r\n\r\n"), "request after the bad ones");
+    }
+
+    // A connection that stops partway through a request, or sits idle
+    // between requests, is closed once the read timeout passes
+    private static void closesIdleConnections() throws Exception {
+        System.setProperty("atm.web.readTimeoutSeconds", "1");
+        NioWebServer server;
+        try {
+            server = new NioWebServer(0, 0, Executors.newCachedThreadPool(), MAX_BODY_BYTES);
+        } finally {
+            System.clearProperty("atm.web.readTimeoutSeconds");
+        }
+        server.createContext("/", NioWebServerTest::echo);
+        server.start();
+        try (Socket partial = connect(server.getPort()); Socket idle = connect(server.getPort())) {
+            send(partial, "GET / HTTP/1.1\r\nHost: loc");
+            send(idle, "GET /idle HTTP/1.1\r\n\r\n");
+            checkEquals(new Response(200, "GET /idle null "), read(idle), "response before going idle");
+            checkEquals(-1, partial.getInputStream().read(), "partial request closed after the timeout");
+            checkEquals(-1, idle.getInputStream().read(), "idle connection closed after the timeout");
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static int exchange(int port, String request) throws IOException {
+        try (Socket socket = connect(port)) {
+            send(socket, request);
+            return read(socket).status();
+        }
+    }
+
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress("127.0.0.1", port), TIMEOUT_MILLIS);
+        socket.setSoTimeout(TIMEOUT_MILLIS);
+        return socket;
+    }
+
+    private static void send(Socket socket, String text) throws IOException {
+        socket.getOutputStream().write(text.getBytes(StandardCharsets.ISO_8859_1));
+        socket.getOutputStream().flush();
+    }
+
+    // Reads one response framed by Content-Length
+    private static Response read(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        String statusLine = readLine(in);
+        check(statusLine.startsWith("HTTP/1.1 "), "status line: " + statusLine);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        int length = 0;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (line.substring(0, colon).equalsIgnoreCase("Content-Length")) {
+                length = Integer.parseInt(line.substring(colon + 1).trim());
+            }
+        }
+        return new Response(status, new String(in.readNBytes(length), StandardCharsets.UTF_8));
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("Connection closed mid-response");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.ISO_8859_1);
+    }
+}
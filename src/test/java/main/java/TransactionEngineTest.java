@@ -0,0 +1,238 @@
+package main.java;
+
+import static main.java.TestSupport.check;
+import static main.java.TestSupport.checkEquals;
+import static main.java.TestSupport.checkThrows;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Writes to transactions.txt in the working directory through
+// TransactionHistory, as Account does in the application
+class TransactionEngineTest {
+    static void run() throws Exception {
+        appliesOperations();
+        repeatedRequestIdMovesMoneyOnce();
+        requestIdIsScopedByAccount();
+        creditPastMaximumIsRefused();
+        batchTransferIsWrittenAtOnce();
+        closeCompletesEveryCommand();
+    }
+
+    private static void appliesOperations() {
+        TransactionEngine engine = new TransactionEngine(new MemoryAccountStore());
+        Account ana = new Account("800001", "1234", Money.ofCents(10_000), "Ana Cruz");
+        Account ben = new Account("800002", "1234", Money.ZERO, "Ben Reyes");
+        TransactionEngine.await(engine.deposit(ana, Money.ofCents(500)));
+        TransactionEngine.await(engine.withdraw(ana, Money.ofCents(2_000)));
+        TransactionEngine.await(engine.transfer(ana, Money.ofCents(3_000), ben, "Rent"));
+        checkEquals(5_500L, ana.getBalance().getCents(), "sender balance");
+        checkEquals(3_000L, ben.getBalance().getCents(), "recipient balance");
+
+        IllegalStateException e = checkThrows(IllegalStateException.class,
+            () -> TransactionEngine.await(engine.withdraw(ben, Money.ofCents(3_001))), "overdraft");
+        checkEquals("Insufficient funds", e.getMessage(), "overdraft message");
+        checkEquals(3_000L, ben.getBalance().getCents(), "balance after a refused withdrawal");
+        engine.close();
+
+        checkThrows(IllegalStateException.class,
+            () -> TransactionEngine.await(engine.deposit(ana, Money.ofCents(1))), "deposit after close");
+    }
+
+    private static void repeatedRequestIdMovesMoneyOnce() {
+        TransactionEngine engine = new TransactionEngine(new MemoryAccountStore());
+        Account ana = new Account("800003", "1234", Money.ofCents(10_000), "Ana Cruz");
+        Account ben = new Account("800004", "1234", Money.ZERO, "Ben Reyes");
+        for (int i = 0; i < 3; i++) {
+            TransactionEngine.await(engine.transfer("transfer-1", ana, Money.ofCents(1_000), ben, "Rent",
+                TransactionLimits.Channel.ATM));
+        }
+        checkEquals(9_000L, ana.getBalance().getCents(), "sender balance after retries");
+        checkEquals(1_000L, ben.getBalance().getCents(), "recipient balance after retries");
+        engine.close();
+    }
+
+    // Another account reusing the same request ID is a different request
+    private static void requestIdIsScopedByAccount() {
+        TransactionEngine engine = new TransactionEngine(new MemoryAccountStore());
+        Account ana = new Account("800007", "1234", Money.ZERO, "Ana Cruz");
+        Account ben = new Account("800008", "1234", Money.ZERO, "Ben Reyes");
+        TransactionEngine.await(engine.deposit("shared-1", ana, Money.ofCents(500), TransactionLimits.Channel.WEB));
+        TransactionEngine.await(engine.deposit("shared-1", ben, Money.ofCents(700), TransactionLimits.Channel.WEB));
+        checkEquals(500L, ana.getBalance().getCents(), "first account's deposit");
+        checkEquals(700L, ben.getBalance().getCents(), "second account's deposit with the same request ID");
+        engine.close();
+    }
+
+    private static void creditPastMaximumIsRefused() {
+        TransactionEngine engine = new TransactionEngine(new MemoryAccountStore());
+        Account full = new Account("800005", "1234", Money.ofCents(Long.MAX_VALUE - 10), "Full Account");
+        Account ana = new Account("800006", "1234", Money.ofCents(10_000), "Ana Cruz");
+        checkThrows(IllegalStateException.class,
+            () -> TransactionEngine.await(engine.deposit(full, Money.ofCents(11))), "deposit past the maximum");
+        checkEquals(Long.MAX_VALUE - 10, full.getBalance().getCents(), "balance after a refused deposit");
+
+        // The debit is applied before the credit fails, and is refunded
+        IllegalStateException e = checkThrows(IllegalStateException.class,
+            () -> TransactionEngine.await(engine.transfer(ana, Money.ofCents(1_000), full, "Overflow")),
+            "transfer past the maximum");
+        checkEquals("Balance limit exceeded", e.getMessage(), "transfer failure");
+        checkEquals(10_000L, ana.getBalance().getCents(), "sender balance after the refund");
+        checkEquals(Long.MAX_VALUE - 10, full.getBalance().getCents(), "recipient balance after a refused credit");
+        checkEquals("TRANSFER_REFUND", ana.getTransactionHistory().get(ana.getTransactionHistory().size() - 1).getType(),
+            "last sender entry");
+        TransactionEngine.await(engine.deposit(full, Money.ofCents(10)));
+        engine.close();
+    }
+
+    // Keeps the balance each account was last written with, the accounts of
+    // each saveAll, and the lowest total ever stored across the tracked
+    // accounts
+    private static class RecordingStore extends MemoryAccountStore {
+        final Map<String, Long> written = new ConcurrentHashMap<>();
+        final List<List<String>> batches = new ArrayList<>();
+        final List<String> tracked;
+        long lowestTotal = Long.MAX_VALUE;
+
+        RecordingStore(List<Account> tracked) {
+            this.tracked = new ArrayList<>();
+            for (Account account : tracked) {
+                this.tracked.add(account.getAccountNumber());
+                written.put(account.getAccountNumber(), account.getBalance().getCents());
+            }
+        }
+
+        @Override
+        public synchronized void save(Account account) {
+            written.put(account.getAccountNumber(), account.getBalance().getCents());
+            updateTotal();
+        }
+
+        @Override
+        public synchronized void saveAll(Collection<Account> accounts) {
+            List<String> numbers = new ArrayList<>();
+            for (Account account : accounts) {
+                written.put(account.getAccountNumber(), account.getBalance().getCents());
+                numbers.add(account.getAccountNumber());
+            }
+            batches.add(numbers);
+            updateTotal();
+        }
+
+        private void updateTotal() {
+            long total = 0;
+            for (String number : tracked) {
+                total += written.get(number);
+            }
+            lowestTotal = Math.min(lowestTotal, total);
+        }
+    }
+
+    // Deposits to the source run alongside the batch. Money only moves
+    // between the batch's accounts, so their stored total must never drop,
+    // as it would if the debit were written before the credits.
+    private static void batchTransferIsWrittenAtOnce() {
+        Account source = new Account("820001", "1234", Money.ofCents(10_000), "Payroll");
+        Account ana = new Account("820002", "1234", Money.ZERO, "Ana Cruz");
+        Account ben = new Account("820003", "1234", Money.ZERO, "Ben Reyes");
+        Account full = new Account("820004", "1234", Money.ofCents(Long.MAX_VALUE - 10), "Full Account");
+        RecordingStore store = new RecordingStore(List.of(source, ana, ben));
+        TransactionEngine engine = new TransactionEngine(store);
+        AccountRegistry accounts = new AccountRegistry();
+        for (Account account : List.of(source, ana, ben, full)) {
+            accounts.put(account);
+        }
+        BatchTransfer batch = new BatchTransfer()
+            .add("820002", Money.ofCents(1_000))
+            .add("829999", Money.ofCents(1_000))
+            .add("820003", Money.ofCents(2_000))
+            .add("820004", Money.ofCents(500));
+
+        CompletableFuture<BatchTransfer> result = engine.transferBatch(source, batch, accounts, "Salaries",
+            TransactionLimits.Channel.ATM);
+        List<CompletableFuture<Void>> deposits = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            deposits.add(engine.deposit(source, Money.ofCents(1)));
+        }
+        result.join();
+        for (CompletableFuture<Void> deposit : deposits) {
+            TransactionEngine.await(deposit);
+        }
+
+        List<BatchTransfer.Item> items = batch.getItems();
+        checkEquals(BatchTransfer.Status.COMPLETED, items.get(0).getStatus(), "first item");
+        checkEquals(BatchTransfer.Status.REJECTED, items.get(1).getStatus(), "item for a missing account");
+        checkEquals(BatchTransfer.Status.COMPLETED, items.get(2).getStatus(), "third item");
+        checkEquals(BatchTransfer.Status.FAILED, items.get(3).getStatus(), "item past the balance limit");
+        checkEquals(3_000L, batch.getTransferredTotal().getCents(), "transferred total");
+        checkEquals(7_200L, source.getBalance().getCents(), "source balance");
+        checkEquals(1_000L, ana.getBalance().getCents(), "first recipient balance");
+        checkEquals(2_000L, ben.getBalance().getCents(), "second recipient balance");
+        checkEquals(Long.MAX_VALUE - 10, full.getBalance().getCents(), "refused recipient balance");
+
+        checkEquals(List.of(List.of("820001", "820002", "820003", "820004")),
+            store.batches.stream().map(numbers -> numbers.stream().sorted().toList()).toList(), "batch writes");
+        check(store.lowestTotal >= 10_000L, "stored total dropped to " + store.lowestTotal);
+        for (Account account : List.of(source, ana, ben, full)) {
+            checkEquals(account.getBalance().getCents(), store.written.get(account.getAccountNumber()),
+                "stored balance of " + account.getAccountNumber());
+        }
+        engine.close();
+    }
+
+    // Every command offered while the engine closes must complete, and a
+    // transfer whose debit was applied must also be credited
+    private static void closeCompletesEveryCommand() throws Exception {
+        for (int round = 0; round < 5; round++) {
+            TransactionEngine engine = new TransactionEngine(new MemoryAccountStore());
+            Account[] accounts = new Account[8];
+            for (int i = 0; i < accounts.length; i++) {
+                accounts[i] = new Account("81000" + i, "1234", Money.ofCents(1_000_000), "Close Test " + i);
+            }
+            List<List<CompletableFuture<Void>>> submitted = new ArrayList<>();
+            Thread[] clients = new Thread[4];
+            for (int t = 0; t < clients.length; t++) {
+                List<CompletableFuture<Void>> futures = new ArrayList<>();
+                submitted.add(futures);
+                clients[t] = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 2_000; i++) {
+                        Account sender = accounts[random.nextInt(accounts.length)];
+                        Account recipient = accounts[random.nextInt(accounts.length)];
+                        if (sender != recipient) {
+                            futures.add(engine.transfer(sender, Money.ofCents(100), recipient, "Close test"));
+                        }
+                    }
+                });
+                clients[t].start();
+            }
+            Thread.sleep(round * 5L);
+            engine.close();
+            for (Thread client : clients) {
+                client.join();
+            }
+
+            for (List<CompletableFuture<Void>> futures : submitted) {
+                for (CompletableFuture<Void> future : futures) {
+                    try {
+                        future.get(10, TimeUnit.SECONDS);
+                    } catch (ExecutionException e) {
+                        check(e.getCause() instanceof IllegalStateException, "transfer failed with " + e.getCause());
+                    }
+                }
+            }
+            long total = 0;
+            for (Account account : accounts) {
+                total += account.getBalance().getCents();
+            }
+            checkEquals(8_000_000L, total, "total balance after closing in round " + round);
+        }
+    }
+}
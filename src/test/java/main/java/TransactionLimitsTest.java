@@ -0,0 +1,80 @@
+package main.java;
+
+import static main.java.TestSupport.checkEquals;
+import static main.java.TestSupport.checkThrows;
+
+// Relies on the web channel policies AllTests sets: 3 transactions an hour
+// and ₱1,000.00 a day. The ATM channel is unlimited.
+class TransactionLimitsTest {
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+    // Midnight, so hour and day windows start on a bucket boundary
+    private static final long START = 20_000 * 24 * HOUR;
+    private static final TransactionLimits.Channel WEB = TransactionLimits.Channel.WEB;
+    private static final TransactionLimits.Channel ATM = TransactionLimits.Channel.ATM;
+
+    static void run() {
+        hourlyCountSlides();
+        dailyAmountSlides();
+        otherChannelIsNotCounted();
+        releaseUndoesReservation();
+        releaseAfterWindowMovedOn();
+    }
+
+    private static void hourlyCountSlides() {
+        TransactionLimits limits = new TransactionLimits();
+        limits.reserve(WEB, 0, START);
+        limits.reserve(WEB, 0, START + 10 * MINUTE);
+        limits.reserve(WEB, 0, START + 20 * MINUTE);
+        checkThrows(IllegalStateException.class, () -> limits.reserve(WEB, 0, START + 59 * MINUTE), "fourth in the hour");
+        // The first one has left the window, the other two are still in it
+        limits.reserve(WEB, 0, START + 60 * MINUTE);
+        checkThrows(IllegalStateException.class, () -> limits.reserve(WEB, 0, START + 69 * MINUTE), "fourth in the next hour");
+        limits.reserve(WEB, 0, START + 70 * MINUTE);
+    }
+
+    private static void dailyAmountSlides() {
+        TransactionLimits limits = new TransactionLimits();
+        limits.reserve(WEB, 60_000, START);
+        limits.reserve(WEB, 40_000, START + 2 * HOUR);
+        checkThrows(IllegalStateException.class, () -> limits.reserve(WEB, 1, START + 23 * HOUR), "one centavo over the day");
+        // Deposits move nothing out and only count against the count policy
+        limits.reserve(WEB, 0, START + 23 * HOUR);
+        limits.reserve(WEB, 60_000, START + 24 * HOUR);
+        checkThrows(IllegalStateException.class, () -> limits.reserve(WEB, 1, START + 25 * HOUR), "still full after a day");
+        limits.reserve(WEB, 40_000, START + 26 * HOUR);
+    }
+
+    private static void otherChannelIsNotCounted() {
+        TransactionLimits limits = new TransactionLimits();
+        for (int i = 0; i < 10; i++) {
+            limits.reserve(ATM, 100_000, START + i * MINUTE);
+        }
+        limits.reserve(WEB, 100_000, START + 10 * MINUTE);
+    }
+
+    private static void releaseUndoesReservation() {
+        TransactionLimits limits = new TransactionLimits();
+        long minute = limits.reserve(WEB, 100_000, START);
+        checkEquals(START / MINUTE, minute, "reserved minute");
+        limits.release(WEB, 100_000, minute);
+        limits.reserve(WEB, 100_000, START + MINUTE);
+    }
+
+    // A reservation released after the hour window has passed its minute must
+    // not come out of the minutes that are still counted
+    private static void releaseAfterWindowMovedOn() {
+        TransactionLimits limits = new TransactionLimits();
+        long minute = limits.reserve(WEB, 50_000, START);
+        limits.reserve(WEB, 10_000, START + 61 * MINUTE);
+        limits.release(WEB, 50_000, minute);
+        limits.reserve(WEB, 10_000, START + 62 * MINUTE);
+        limits.reserve(WEB, 10_000, START + 63 * MINUTE);
+        checkThrows(IllegalStateException.class, () -> limits.reserve(WEB, 0, START + 64 * MINUTE),
+            "hourly count after a late release");
+        // The release did come out of the day, which is still open
+        limits.reserve(WEB, 70_000, START + 3 * HOUR);
+        checkThrows(IllegalStateException.class, () -> limits.reserve(WEB, 1, START + 4 * HOUR),
+            "daily amount after a late release");
+    }
+}